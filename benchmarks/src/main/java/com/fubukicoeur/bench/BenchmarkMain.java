@@ -0,0 +1,24 @@
+package com.fubukicoeur.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar: the JMH command line, with the GC profiler on by default
+ * so every result comes with gc.alloc.rate.norm (bytes allocated per operation).
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-prof") && !jmhArgs.contains("-h") && !jmhArgs.contains("-l")) {
+            jmhArgs.add("-prof");
+            jmhArgs.add("gc");
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,67 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fubukicoeur.MatchInfo;
+import com.fubukicoeur.OutputFormat;
+import com.fubukicoeur.ParseMode;
+import com.fubukicoeur.TitleWriter;
+
+/**
+ * Everything after the network: parse every page, then write the titles file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({ "TREE", "STREAMING" })
+    public ParseMode parseMode;
+
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        output = Files.createTempFile("bench-sets", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public List<MatchInfo> parseAndWrite(FixtureState state) throws IOException {
+        Fixtures.EventFixture fixture = state.fixture;
+        List<MatchInfo> matches = new ArrayList<>();
+        for (byte[] page : fixture.pages()) {
+            matches.addAll(parseMode.parser().parse(new ByteArrayInputStream(page), fixture.phases(), fixture.slug())
+                    .matches());
+        }
+        TitleWriter.write(matches, "Bench Event", output, OutputFormat.TXT);
+        return matches;
+    }
+}
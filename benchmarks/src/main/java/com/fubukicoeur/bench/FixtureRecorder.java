@@ -0,0 +1,64 @@
+package com.fubukicoeur.bench;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fubukicoeur.HttpTransport;
+import com.fubukicoeur.RequestScheduler;
+import com.fubukicoeur.SetsQuery;
+
+/**
+ * Records the real responses of an event so the benchmarks can run on them.
+ *
+ * Usage: FixtureRecorder &lt;token&gt; &lt;event slug&gt; &lt;folder&gt;, for example
+ * "FixtureRecorder $TOKEN tournament/genesis-9-1/event/ultimate-singles fixtures/major".
+ * Then run the benchmarks with -Dfixtures.dir=fixtures.
+ */
+public final class FixtureRecorder {
+    private static final URI API_URI = URI.create("https://api.start.gg/gql/alpha");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FixtureRecorder() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: FixtureRecorder <token> <event slug> <folder>");
+            System.exit(2);
+        }
+        String token = args[0];
+        String eventSlug = args[1];
+        Path dir = Path.of(args[2]);
+        Files.createDirectories(dir);
+        RequestScheduler scheduler = new RequestScheduler(HttpTransport.shared(), API_URI);
+
+        byte[] phases = record(scheduler, token, SetsQuery.PHASES_QUERY, Map.of("eventSlug", eventSlug));
+        Files.write(dir.resolve("phases.json"), phases);
+
+        int perPage = SetsQuery.perPage();
+        int totalPages = 1;
+        for (int page = 1; page <= totalPages; page++) {
+            byte[] body = record(scheduler, token, SetsQuery.SETS_QUERY,
+                    Map.of("eventSlug", eventSlug, "page", page, "perPage", perPage));
+            Files.write(dir.resolve("page-" + page + ".json"), body);
+            totalPages = objectMapper.readTree(body).path("data").path("event").path("sets").path("pageInfo")
+                    .path("totalPages").asInt(1);
+            System.out.println("Recorded page " + page + "/" + totalPages);
+        }
+    }
+
+    private static byte[] record(RequestScheduler scheduler, String token, String query, Map<String, Object> variables)
+            throws Exception {
+        byte[] request = objectMapper.writeValueAsBytes(Map.of("query", query, "variables", variables));
+        return scheduler.execute(token, request, body -> {
+            byte[] bytes = body.readAllBytes();
+            JsonNode root = objectMapper.readTree(bytes);
+            RequestScheduler.throwIfErrors(root);
+            return bytes;
+        });
+    }
+}
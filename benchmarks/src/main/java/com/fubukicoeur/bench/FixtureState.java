@@ -0,0 +1,42 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fubukicoeur.MatchInfo;
+import com.fubukicoeur.ParseMode;
+
+/**
+ * The event every benchmark works on, loaded once per trial.
+ */
+@State(Scope.Benchmark)
+public class FixtureState {
+
+    @Param({ "LOCAL", "REGIONAL", "MAJOR" })
+    public Fixtures.Size size;
+
+    public Fixtures.EventFixture fixture;
+    // Already parsed, for the benchmarks that only format or write
+    public List<MatchInfo> matches;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        fixture = Fixtures.load(size);
+        matches = new ArrayList<>();
+        for (byte[] page : fixture.pages()) {
+            matches.addAll(ParseMode.STREAMING.parser()
+                    .parse(new ByteArrayInputStream(page), fixture.phases(), fixture.slug()).matches());
+        }
+        // Divide gc.alloc.rate.norm by these numbers to get bytes per set
+        System.out.println(size + ": " + fixture.pages().size() + " pages, " + fixture.setCount() + " sets, "
+                + matches.size() + " streamed, " + fixture.totalBytes() + " bytes of JSON");
+    }
+}
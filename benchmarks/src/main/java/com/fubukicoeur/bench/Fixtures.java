@@ -0,0 +1,294 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fubukicoeur.EventPhases;
+import com.fubukicoeur.SetsQuery;
+
+/**
+ * start.gg responses for the benchmarks, so they run without network and without a token.
+ *
+ * If -Dfixtures.dir is set and has a folder for the size (recorded with FixtureRecorder), the recorded
+ * responses are used. Otherwise a response with the same shape as SetsQuery is generated with a fixed seed,
+ * so two runs of the benchmarks always parse the exact same bytes.
+ */
+public final class Fixtures {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final long SEED = 20240601L;
+
+    // Some Ultimate character ids, the first ones are picked more often like real mains
+    private static final int[] CHARACTER_IDS = {
+        1302, 1319, 1766, 1286, 1271, 1292, 1300, 1304, 1330, 1322, 1293, 1329, 1317, 1277, 1298, 1331,
+        1275, 1453, 1795, 1410, 1327, 1897, 1777, 1846, 1406, 1407, 1408, 1409, 1411, 1412, 1413, 1526,
+        1530, 1532, 1539, 1747, 1272, 1273, 1274, 1276, 1278, 1279, 1280, 1282, 1283, 1285, 1287, 1289
+    };
+    private static final String[] WINNERS_ROUNDS = {
+        "Winners Round 1", "Winners Round 2", "Winners Round 3", "Winners Quarter-Final", "Winners Semi-Final",
+        "Winners Final", "Grand Final", "Grand Final Reset"
+    };
+    private static final String[] LOSERS_ROUNDS = {
+        "Losers Round 1", "Losers Round 2", "Losers Round 3", "Losers Round 4", "Losers Quarter-Final",
+        "Losers Semi-Final", "Losers Final"
+    };
+    private static final String[] SYLLABLES = {
+        "ka", "ri", "zo", "mu", "te", "shi", "ro", "na", "vex", "ly", "dra", "ko", "pi", "sa", "ten", "gu"
+    };
+
+    /**
+     * The events we benchmark: a small local, a 500 entrants regional and a 3,000 entrants major.
+     */
+    public enum Size {
+        LOCAL(32, 0.30),
+        REGIONAL(500, 0.10),
+        MAJOR(3000, 0.05);
+
+        private final int entrants;
+        private final double poolsStreamRate;
+
+        Size(int entrants, double poolsStreamRate) {
+            this.entrants = entrants;
+            this.poolsStreamRate = poolsStreamRate;
+        }
+
+        public int entrants() {
+            return entrants;
+        }
+    }
+
+    /**
+     * The responses of one event.
+     *
+     * @param slug The event slug.
+     * @param phases The phases, as the phases query gives them.
+     * @param pages The raw body of each sets page, page 1 first.
+     * @param setCount The number of sets in all the pages, streamed or not.
+     */
+    public record EventFixture(String slug, EventPhases phases, List<byte[]> pages, int setCount) {
+
+        public long totalBytes() {
+            long total = 0;
+            for (byte[] page : pages) {
+                total += page.length;
+            }
+            return total;
+        }
+    }
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return The recorded responses if there are some for this size, generated ones otherwise.
+     */
+    public static EventFixture load(Size size) {
+        String dir = System.getProperty("fixtures.dir");
+        if (dir != null) {
+            Path sizeDir = Path.of(dir, size.name().toLowerCase(Locale.ROOT));
+            if (Files.isDirectory(sizeDir)) {
+                return loadRecorded(sizeDir);
+            }
+        }
+        return generate(size, SetsQuery.perPage());
+    }
+
+    /**
+     * Reads a folder written by FixtureRecorder: phases.json and page-1.json, page-2.json...
+     */
+    public static EventFixture loadRecorded(Path dir) {
+        try {
+            EventPhases phases = EventPhases.fromNode(objectMapper.readTree(dir.resolve("phases.json").toFile())
+                    .path("data").path("event").path("phases"));
+            List<byte[]> pages = new ArrayList<>();
+            int setCount = 0;
+            for (int page = 1; Files.exists(dir.resolve("page-" + page + ".json")); page++) {
+                byte[] body = Files.readAllBytes(dir.resolve("page-" + page + ".json"));
+                pages.add(body);
+                setCount += objectMapper.readTree(body).path("data").path("event").path("sets").path("nodes").size();
+            }
+            return new EventFixture(dir.getFileName().toString(), phases, pages, setCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the fixtures in " + dir, e);
+        }
+    }
+
+    /**
+     * Generates a double elimination event: a pools phase with every entrant, then a top 64
+     * (plus a top 8 phase for the major). Top sets are streamed more often than pools sets.
+     *
+     * @param size The size of the event.
+     * @param perPage The page size, like SetsQuery.perPage().
+     * @return The event, always the same for the same size and perPage.
+     */
+    public static EventFixture generate(Size size, int perPage) {
+        return generate(size.name().toLowerCase(Locale.ROOT), size.entrants(), size.poolsStreamRate, perPage,
+                SEED + size.ordinal());
+    }
+
+    /**
+     * Same as generate(Size, int) for any number of entrants, used by the mock server.
+     *
+     * @param name Put in the event slug.
+     * @param entrants The number of entrants, at least 2.
+     * @param poolsStreamRate The part of the pools sets that are streamed, between 0 and 1.
+     * @param perPage The page size.
+     * @param seed The seed, the same seed gives the same event.
+     */
+    public static EventFixture generate(String name, int entrants, double poolsStreamRate, int perPage, long seed) {
+        Random random = new Random(seed);
+
+        List<EventPhases.Phase> phaseList = new ArrayList<>();
+        phaseList.add(new EventPhases.Phase("900001", entrants > 64 ? "Pools" : "Bracket", entrants));
+        if (entrants > 64) {
+            phaseList.add(new EventPhases.Phase("900002", "Top 64", 64));
+        }
+        if (entrants > 1000) {
+            phaseList.add(new EventPhases.Phase("900003", "Top 8", 8));
+        }
+        EventPhases phases = EventPhases.of(phaseList);
+
+        String[] tags = new String[entrants];
+        int[] mains = new int[entrants];
+        int[] secondaries = new int[entrants];
+        for (int i = 0; i < entrants; i++) {
+            tags[i] = tag(random, i);
+            mains[i] = CHARACTER_IDS[Math.min(CHARACTER_IDS.length - 1, (int) Math.abs(random.nextGaussian() * 12))];
+            secondaries[i] = CHARACTER_IDS[random.nextInt(CHARACTER_IDS.length)];
+        }
+
+        List<SetSpec> sets = new ArrayList<>();
+        for (int p = 0; p < phaseList.size(); p++) {
+            EventPhases.Phase phase = phaseList.get(p);
+            int phaseSets = Math.max(1, phase.numSeeds() * 2 - 2);
+            double streamRate = p == 0 ? poolsStreamRate : (p == phaseList.size() - 1 ? 1.0 : 0.5);
+            boolean bestOf5 = p == phaseList.size() - 1;
+            for (int i = 0; i < phaseSets; i++) {
+                int player1 = random.nextInt(entrants);
+                int player2 = (player1 + 1 + random.nextInt(entrants - 1)) % entrants;
+                String round = random.nextBoolean()
+                        ? WINNERS_ROUNDS[random.nextInt(WINNERS_ROUNDS.length)]
+                        : LOSERS_ROUNDS[random.nextInt(LOSERS_ROUNDS.length)];
+                int games = bestOf5 ? 3 + random.nextInt(3) : 2 + random.nextInt(2);
+                sets.add(new SetSpec(phase.id(), round, player1, player2, games, random.nextDouble() < streamRate));
+            }
+        }
+
+        int totalPages = Math.max(1, (sets.size() + perPage - 1) / perPage);
+        List<byte[]> pages = new ArrayList<>(totalPages);
+        int setId = 70_000_000;
+        for (int page = 0; page < totalPages; page++) {
+            List<SetSpec> pageSets = sets.subList(page * perPage, Math.min(sets.size(), (page + 1) * perPage));
+            pages.add(writePage(pageSets, totalPages, setId, tags, mains, secondaries, random));
+            setId += pageSets.size();
+        }
+        return new EventFixture("tournament/bench-" + name + "/event/ultimate-singles", phases, pages, sets.size());
+    }
+
+    private record SetSpec(String phaseId, String round, int player1, int player2, int games, boolean streamed) {
+    }
+
+    private static byte[] writePage(List<SetSpec> sets, int totalPages, int firstSetId, String[] tags, int[] mains,
+            int[] secondaries, Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("data");
+            json.writeObjectFieldStart("event");
+            json.writeStringField("state", SetsQuery.EVENT_COMPLETED);
+            json.writeObjectFieldStart("sets");
+            json.writeObjectFieldStart("pageInfo");
+            json.writeNumberField("totalPages", totalPages);
+            json.writeEndObject();
+            json.writeArrayFieldStart("nodes");
+
+            int setId = firstSetId;
+            for (SetSpec set : sets) {
+                json.writeStartObject();
+                json.writeNumberField("id", setId++);
+                json.writeStringField("fullRoundText", set.round());
+                if (set.streamed()) {
+                    json.writeObjectFieldStart("stream");
+                    json.writeNumberField("id", 5000 + random.nextInt(4));
+                    json.writeEndObject();
+                } else {
+                    json.writeNullField("stream");
+                }
+                json.writeObjectFieldStart("phaseGroup");
+                json.writeObjectFieldStart("phase");
+                json.writeNumberField("id", Long.parseLong(set.phaseId()));
+                json.writeEndObject();
+                json.writeEndObject();
+
+                json.writeArrayFieldStart("slots");
+                for (int player : new int[] { set.player1(), set.player2() }) {
+                    json.writeStartObject();
+                    json.writeObjectFieldStart("entrant");
+                    json.writeNumberField("id", 10_000_000 + player);
+                    json.writeArrayFieldStart("participants");
+                    json.writeStartObject();
+                    json.writeObjectFieldStart("player");
+                    json.writeStringField("gamerTag", tags[player]);
+                    json.writeEndObject();
+                    json.writeEndObject();
+                    json.writeEndArray();
+                    json.writeEndObject();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+
+                json.writeArrayFieldStart("games");
+                for (int game = 0; game < set.games(); game++) {
+                    json.writeStartObject();
+                    json.writeArrayFieldStart("selections");
+                    for (int player : new int[] { set.player1(), set.player2() }) {
+                        json.writeStartObject();
+                        json.writeStringField("selectionType", "CHARACTER");
+                        json.writeNumberField("selectionValue", random.nextInt(10) < 8 ? mains[player] : secondaries[player]);
+                        json.writeObjectFieldStart("entrant");
+                        json.writeNumberField("id", 10_000_000 + player);
+                        json.writeEndObject();
+                        json.writeEndObject();
+                    }
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String tag(Random random, int index) {
+        StringBuilder tag = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            tag.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        tag.setCharAt(0, Character.toUpperCase(tag.charAt(0)));
+        // Some real tags have digits too
+        if (index % 7 == 0) {
+            tag.append(index % 100);
+        }
+        return tag.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.fubukicoeur.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fubukicoeur.MatchInfo;
+import com.fubukicoeur.TitleTemplate;
+import com.fubukicoeur.TitleWriter;
+
+/**
+ * Building the titles of every streamed set: as Strings, and appended to one reused StringBuilder
+ * like TitleWriter does for TXT files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+    private final StringBuilder title = new StringBuilder(128);
+
+    @Benchmark
+    public void matchToString(FixtureState state, Blackhole blackhole) {
+        for (MatchInfo match : state.matches) {
+            blackhole.consume(match.toString());
+        }
+    }
+
+    @Benchmark
+    public void formatTitle(FixtureState state, Blackhole blackhole) {
+        for (MatchInfo match : state.matches) {
+            blackhole.consume(TitleWriter.formatTitle("Bench Event", match));
+        }
+    }
+
+    @Benchmark
+    public void appendToReusedBuilder(FixtureState state, Blackhole blackhole) {
+        for (MatchInfo match : state.matches) {
+            title.setLength(0);
+            TitleTemplate.DEFAULT.appendTo(title, "Bench Event", match);
+            blackhole.consume(title.length());
+        }
+    }
+}
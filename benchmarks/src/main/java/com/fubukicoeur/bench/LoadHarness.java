@@ -0,0 +1,296 @@
+package com.fubukicoeur.bench;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.fubukicoeur.ApiCalls;
+import com.fubukicoeur.HttpTransport;
+import com.fubukicoeur.MatchInfo;
+import com.fubukicoeur.ParseMode;
+import com.fubukicoeur.RateLimiter;
+import com.fubukicoeur.SetsPipeline;
+import com.fubukicoeur.TokenPool;
+
+/**
+ * Full runs of getAllStreamedSetDetails against MockStartGg, with what the JMH benchmarks can't show:
+ * requests per second, wall time, page latency and bytes on the wire, with retries and rate limits included.
+ *
+ * Usage: LoadHarness [--entrants 3000] [--stream-rate 0.05] [--runs 5] [--warmup 1] [--concurrency 4]
+ * [--latency-ms 0] [--slow-rate 0] [--slow-ms 2000] [--429-rate 0] [--503-rate 0] [--error-rate 0]
+ * [--server-limit 0] [--client-limit 0] [--parse-mode STREAMING] [--no-gzip] [--pipeline]
+ * [--per-page 0] [--coalesce] [--tokens 1] [--refused-tokens 0]
+ *
+ * The limits are in requests per minute, 0 means none. --server-limit 80 makes the mock behave like start.gg,
+ * --client-limit 80 gives the client the real start.gg bucket (by default the client has no limit).
+ * --pipeline writes the titles to a temporary file through SetsPipeline and adds the time to the first title.
+ * Every run also gives the peak heap, the pipeline one shouldn't grow with --entrants.
+ * --per-page sets the page size (0 is the default one) and --coalesce asks several pages per request,
+ * compare the requests of "--per-page 10" with and without it.
+ * --tokens gives the client a TokenPool of that many tokens, each with its own --client-limit and --server-limit
+ * bucket, and the mock answers the first --refused-tokens of them with a 401.
+ */
+public final class LoadHarness {
+    private static final String TOKEN_PREFIX = "mock-token-";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int entrants = 3000;
+        double streamRate = 0.05;
+        int runs = 5;
+        int warmup = 1;
+        int concurrency = 4;
+        long latencyMillis = 0;
+        double slowRate = 0;
+        long slowMillis = 2000;
+        double rateLimitRate = 0;
+        double serverErrorRate = 0;
+        double graphqlErrorRate = 0;
+        int serverLimit = 0;
+        int clientLimit = 0;
+        ParseMode parseMode = ParseMode.STREAMING;
+        boolean gzip = true;
+        boolean pipeline = false;
+        int perPage = 0;
+        boolean coalesce = false;
+        int tokenCount = 1;
+        int refusedTokens = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--entrants" -> entrants = Integer.parseInt(args[++i]);
+                case "--stream-rate" -> streamRate = Double.parseDouble(args[++i]);
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--latency-ms" -> latencyMillis = Long.parseLong(args[++i]);
+                case "--slow-rate" -> slowRate = Double.parseDouble(args[++i]);
+                case "--slow-ms" -> slowMillis = Long.parseLong(args[++i]);
+                case "--429-rate" -> rateLimitRate = Double.parseDouble(args[++i]);
+                case "--503-rate" -> serverErrorRate = Double.parseDouble(args[++i]);
+                case "--error-rate" -> graphqlErrorRate = Double.parseDouble(args[++i]);
+                case "--server-limit" -> serverLimit = Integer.parseInt(args[++i]);
+                case "--client-limit" -> clientLimit = Integer.parseInt(args[++i]);
+                case "--parse-mode" -> parseMode = ParseMode.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                case "--no-gzip" -> gzip = false;
+                case "--pipeline" -> pipeline = true;
+                case "--per-page" -> perPage = Integer.parseInt(args[++i]);
+                case "--coalesce" -> coalesce = true;
+                case "--tokens" -> tokenCount = Integer.parseInt(args[++i]);
+                case "--refused-tokens" -> refusedTokens = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 1; i <= tokenCount; i++) {
+            String token = TOKEN_PREFIX + i;
+            tokens.add(token);
+            RateLimiter.setForToken(token, clientLimit > 0
+                    ? new RateLimiter(clientLimit, Duration.ofMinutes(1))
+                    : new RateLimiter(Integer.MAX_VALUE, Duration.ofSeconds(1)));
+        }
+
+        try (MockStartGg server = new MockStartGg(0, entrants, streamRate)) {
+            server.setLatency(Duration.ofMillis(latencyMillis));
+            server.setSlowPages(slowRate, Duration.ofMillis(slowMillis));
+            server.setRateLimitRate(rateLimitRate);
+            server.setServerErrorRate(serverErrorRate);
+            server.setGraphqlErrorRate(graphqlErrorRate);
+            server.setServerRateLimit(serverLimit, Duration.ofMinutes(1));
+            server.setGzip(gzip);
+            server.setRefusedTokens(Set.copyOf(tokens.subList(0, Math.min(refusedTokens, tokenCount))));
+            server.start();
+            System.out.println("Mock start.gg on " + server.getApiUrl() + ", " + entrants + " entrants");
+
+            List<RunResult> results = new ArrayList<>();
+            for (int run = 1; run <= warmup + runs; run++) {
+                RunResult result = run(server, new TokenPool(tokens), concurrency, parseMode, pipeline, perPage,
+                        coalesce);
+                boolean measured = run > warmup;
+                System.out.println((measured ? "Run " + (run - warmup) : "Warmup " + run) + ": " + result);
+                if (measured) {
+                    results.add(result);
+                }
+            }
+            printSummary(results);
+        }
+    }
+
+    private static RunResult run(MockStartGg server, TokenPool tokens, int concurrency, ParseMode parseMode,
+            boolean pipeline, int perPage, boolean coalesce) {
+        TimedTransport transport = new TimedTransport();
+        ApiCalls api = new ApiCalls(tokens, "tournament/mock/event/ultimate-singles");
+        api.setApiUrl(server.getApiUrl());
+        api.setTransport(transport);
+        api.setCache(null);
+        api.setCheckpointDir(null);
+        api.setMaxConcurrency(concurrency);
+        api.setParseMode(parseMode);
+        api.setPerPage(perPage);
+        api.setCoalescePages(coalesce);
+
+        long requestsBefore = server.getRequestCount();
+        long bytesSentBefore = server.getBytesSent();
+        long bytesReceivedBefore = server.getBytesReceived();
+        long rateLimitedBefore = server.getRateLimitedCount();
+        System.gc();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        long[] firstTitleNanos = { -1 };
+        String error = null;
+        int sets = 0;
+        try {
+            if (pipeline) {
+                Path output = Files.createTempFile("harness-sets", ".txt");
+                try {
+                    SetsPipeline setsPipeline = new SetsPipeline(api, "Mock Event", output);
+                    setsPipeline.setPageWrittenListener((_, _, _, titlesWritten) -> {
+                        if (titlesWritten > 0 && firstTitleNanos[0] < 0) {
+                            firstTitleNanos[0] = System.nanoTime() - start;
+                        }
+                    });
+                    sets = setsPipeline.run(null);
+                } finally {
+                    Files.deleteIfExists(output);
+                }
+            } else {
+                List<MatchInfo> matches = api.getAllStreamedSetDetails(null);
+                sets = matches.size();
+            }
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        return new RunResult(wallNanos, server.getRequestCount() - requestsBefore, sets,
+                server.getBytesSent() - bytesSentBefore, server.getBytesReceived() - bytesReceivedBefore,
+                server.getRateLimitedCount() - rateLimitedBefore, transport.latencies(), firstTitleNanos[0],
+                peakHeap(), error);
+    }
+
+    private static void printSummary(List<RunResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Long> walls = new ArrayList<>();
+        List<Long> latencies = new ArrayList<>();
+        long requests = 0;
+        long wallTotal = 0;
+        for (RunResult result : results) {
+            walls.add(result.wallNanos());
+            latencies.addAll(result.latencies());
+            requests += result.requests();
+            wallTotal += result.wallNanos();
+        }
+        Collections.sort(walls);
+        Collections.sort(latencies);
+        System.out.printf(Locale.ROOT, "Summary of %d runs: wall p50 %.1f ms, %.1f req/s, page latency p50 %.1f ms p99 %.1f ms%n",
+                results.size(), walls.get(walls.size() / 2) / 1e6, requests / (wallTotal / 1e9),
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return The sum of the peaks of the heap pools since the reset, a bit more than the real peak
+     * since the pools don't all peak at the same time.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private record RunResult(long wallNanos, long requests, int sets, long bytesSent, long bytesReceived,
+            long rateLimited, List<Long> latencies, long firstTitleNanos, long peakHeap, String error) {
+
+        @Override
+        public String toString() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            String summary = String.format(Locale.ROOT,
+                    "%.1f ms, %d requests (%.1f req/s, %d rate limited), %d sets, %d bytes in, %d bytes out,"
+                            + " page latency p50 %.1f ms p99 %.1f ms, peak heap %.1f MB",
+                    wallNanos / 1e6, requests, requests / (wallNanos / 1e9), rateLimited, sets, bytesSent,
+                    bytesReceived, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, peakHeap / 1e6);
+            if (firstTitleNanos >= 0) {
+                summary += String.format(Locale.ROOT, ", first title %.1f ms", firstTitleNanos / 1e6);
+            }
+            return error != null ? summary + ", FAILED: " + error : summary;
+        }
+    }
+
+    /**
+     * Measures each request from the moment it is sent until its body was read and closed,
+     * so the latency includes the download and the parsing like the app sees it.
+     */
+    private static final class TimedTransport extends HttpTransport {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        TimedTransport() {
+            super(Duration.ofSeconds(10), Duration.ofSeconds(60));
+        }
+
+        @Override
+        public Response postJson(URI uri, String bearerToken, byte[] jsonBody) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            Response response = super.postJson(uri, bearerToken, jsonBody);
+            InputStream timedBody = new FilterInputStream(response.body()) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    if (!closed) {
+                        closed = true;
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }
+            };
+            return new Response(response.statusCode(), response.headers(), response.version(), timedBody,
+                    response.tls(), response.newConnection());
+        }
+
+        List<Long> latencies() {
+            synchronized (latencies) {
+                return new ArrayList<>(latencies);
+            }
+        }
+    }
+}
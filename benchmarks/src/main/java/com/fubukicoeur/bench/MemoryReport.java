@@ -0,0 +1,95 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.fubukicoeur.CharacterRegistry;
+import com.fubukicoeur.MatchInfo;
+import com.fubukicoeur.MatchStore;
+import com.fubukicoeur.ParseMode;
+import com.fubukicoeur.SetsQuery;
+
+/**
+ * Bytes per set of a List of MatchInfo and of a MatchStore holding the same sets, measured with JOL:
+ * the whole object graph (strings and arrays included) minus the CharacterRegistry, which is shared by every set.
+ *
+ * Usage: MemoryReport [--events 40] [--entrants 1000] [--stream-rate 0.2]
+ *
+ * The three fixture sizes are measured first, then a season: that many generated events in one list and
+ * one store. The generated tags are made of a few syllables, so like in a real season the same tags
+ * come back from one event to the next.
+ */
+public final class MemoryReport {
+    private static final long SEASON_SEED = 20240901L;
+
+    private MemoryReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int events = 40;
+        int entrants = 1000;
+        double streamRate = 0.2;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--events" -> events = Integer.parseInt(args[++i]);
+                case "--entrants" -> entrants = Integer.parseInt(args[++i]);
+                case "--stream-rate" -> streamRate = Double.parseDouble(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        for (Fixtures.Size size : Fixtures.Size.values()) {
+            report(size.name(), parse(Fixtures.load(size)));
+        }
+
+        List<MatchInfo> season = new ArrayList<>();
+        for (int event = 0; event < events; event++) {
+            season.addAll(parse(Fixtures.generate("season-" + event, entrants, streamRate, SetsQuery.perPage(),
+                    SEASON_SEED + event)));
+        }
+        report("SEASON (" + events + " events of " + entrants + ")", season);
+    }
+
+    private static List<MatchInfo> parse(Fixtures.EventFixture fixture) throws IOException {
+        List<MatchInfo> matches = new ArrayList<>();
+        for (byte[] page : fixture.pages()) {
+            matches.addAll(ParseMode.STREAMING.parser()
+                    .parse(new ByteArrayInputStream(page), fixture.phases(), fixture.slug()).matches());
+        }
+        return matches;
+    }
+
+    private static void report(String name, List<MatchInfo> matches) {
+        if (matches.isEmpty()) {
+            System.out.println(name + ": no streamed sets");
+            return;
+        }
+        MatchStore store = new MatchStore(matches.size());
+        store.addAll(matches);
+
+        Set<CharacterRegistry> registries = new HashSet<>();
+        for (MatchInfo match : matches) {
+            registries.add(match.getCharacters());
+        }
+        GraphLayout shared = GraphLayout.parseInstance(registries.toArray());
+        long listBytes = GraphLayout.parseInstance(matches).subtract(shared).totalSize();
+        long storeBytes = GraphLayout.parseInstance(store).subtract(shared).totalSize();
+
+        System.out.printf(Locale.ROOT, "%s: %d sets, %d different strings%n", name, matches.size(),
+                store.getStrings().size());
+        System.out.printf(Locale.ROOT, "  List<MatchInfo> %,d bytes, %.1f bytes/set%n", listBytes,
+                (double) listBytes / matches.size());
+        System.out.printf(Locale.ROOT, "  MatchStore      %,d bytes, %.1f bytes/set (%.0f%% of the list)%n",
+                storeBytes, (double) storeBytes / matches.size(), 100.0 * storeBytes / listBytes);
+    }
+}
@@ -0,0 +1,410 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fubukicoeur.CharacterRegistry;
+import com.fubukicoeur.EventPhases;
+import com.fubukicoeur.RateLimiter;
+import com.fubukicoeur.SetsQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the start.gg GraphQL API, so full runs can be measured without using our token.
+ *
+ * It answers the queries of SetsQuery with a generated event (see Fixtures) of any size, for any slug,
+ * and it can be told to be slow or to fail: a fixed latency on every request, some pages much slower than
+ * the others, 429s (at random or with a real token bucket per API token), 503s, GraphQL errors and
+ * refused API tokens.
+ * Point ApiCalls at it with setApiUrl(getApiUrl()), or -Dstartgg.api.url for the whole app.
+ */
+public class MockStartGg implements AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String PATH = "/gql/alpha";
+    private static final long SEED = 20240601L;
+    // The events of the fixtures are over, their pages can stay in the cache for good
+    private static final String EVENT_STATE = "\"state\":\"" + SetsQuery.EVENT_COMPLETED + "\",";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int entrants;
+    private final double poolsStreamRate;
+    // The client picks perPage, so the event is generated again for each page size it asks
+    private final Map<Integer, ServedEvent> eventsByPerPage = new ConcurrentHashMap<>();
+    private final Random random = new Random(SEED);
+
+    private volatile long latencyMillis;
+    private volatile double slowPageRate;
+    private volatile long slowPageMillis;
+    private volatile double rateLimitRate;
+    private volatile double serverErrorRate;
+    private volatile double graphqlErrorRate;
+    // One bucket per Authorization header like start.gg, made when a token is first seen
+    private final Map<String, RateLimiter> serverLimiters = new ConcurrentHashMap<>();
+    private volatile int serverLimitRequests;
+    private volatile Duration serverLimitPeriod;
+    private volatile Set<String> refusedTokens = Set.of();
+    private volatile boolean gzip = true;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private record ServedEvent(Fixtures.EventFixture fixture, List<byte[]> gzippedPages, byte[] phases,
+            byte[] gzippedPhases) {
+    }
+
+    /**
+     * Opens the server, call start() to serve requests.
+     *
+     * @param port The port, 0 for any free port.
+     * @param entrants The size of the served event.
+     * @param poolsStreamRate The part of the pools sets that are streamed.
+     */
+    public MockStartGg(int port, int entrants, double poolsStreamRate) throws IOException {
+        this.entrants = entrants;
+        this.poolsStreamRate = poolsStreamRate;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getApiUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * @param latency Added to every request before it is answered.
+     */
+    public void setLatency(Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+    /**
+     * @param rate The part of the sets pages that are slow, between 0 and 1.
+     * @param extra How much longer than the others they take.
+     */
+    public void setSlowPages(double rate, Duration extra) {
+        this.slowPageRate = rate;
+        this.slowPageMillis = extra.toMillis();
+    }
+
+    /**
+     * @param rate The part of the requests answered with a 429 and a Retry-After of 1 second.
+     */
+    public void setRateLimitRate(double rate) {
+        this.rateLimitRate = rate;
+    }
+
+    /**
+     * Answers with 429s like start.gg once more than this many requests were made in the period with a token.
+     *
+     * @param requests The number of requests allowed per period for each token, 0 for no limit.
+     * @param period The period of the limit.
+     */
+    public void setServerRateLimit(int requests, Duration period) {
+        serverLimiters.clear();
+        this.serverLimitPeriod = period;
+        this.serverLimitRequests = requests;
+    }
+
+    /**
+     * @param tokens The API tokens answered with a 401 "Invalid authentication token", like revoked ones.
+     */
+    public void setRefusedTokens(Set<String> tokens) {
+        this.refusedTokens = Set.copyOf(tokens);
+    }
+
+    /**
+     * @param rate The part of the requests answered with a 503.
+     */
+    public void setServerErrorRate(double rate) {
+        this.serverErrorRate = rate;
+    }
+
+    /**
+     * @param rate The part of the requests answered with a GraphQL error, which the client can't retry.
+     */
+    public void setGraphqlErrorRate(double rate) {
+        this.graphqlErrorRate = rate;
+    }
+
+    /**
+     * @param gzip Whether bodies are compressed when the client accepts it, true by default like start.gg.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * @return The event served for this page size, to compare with what the client got.
+     */
+    public Fixtures.EventFixture getEvent(int perPage) {
+        return servedEvent(perPage).fixture();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return The bytes of the response bodies, compressed when they were sent compressed.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            bytesReceived.addAndGet(requestBody.length);
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, json("{\"success\":false,\"message\":\"Only POST is supported\"}"), null);
+                return;
+            }
+
+            sleep(latencyMillis);
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            String token = authorization != null ? authorization.replaceFirst("^Bearer ", "") : "";
+            if (refusedTokens.contains(token)) {
+                errors.incrementAndGet();
+                send(exchange, 401, json("{\"success\":false,\"message\":\"Invalid authentication token\"}"), null);
+                return;
+            }
+            int limit = serverLimitRequests;
+            RateLimiter limiter = limit > 0
+                    ? serverLimiters.computeIfAbsent(token, _ -> new RateLimiter(limit, serverLimitPeriod))
+                    : null;
+            if (chance(rateLimitRate) || (limiter != null && !limiter.tryAcquire())) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, json("{\"success\":false,\"message\":\"Rate limit exceeded - api-token\"}"), null);
+                return;
+            }
+            if (chance(serverErrorRate)) {
+                errors.incrementAndGet();
+                send(exchange, 503, json("{\"success\":false,\"message\":\"Service unavailable\"}"), null);
+                return;
+            }
+            if (chance(graphqlErrorRate)) {
+                errors.incrementAndGet();
+                send(exchange, 200, json("{\"errors\":[{\"message\":\"Mock GraphQL error\"}]}"), null);
+                return;
+            }
+
+            JsonNode request = objectMapper.readTree(requestBody);
+            answer(exchange, request.path("query").asText(), request.path("variables"));
+        }
+    }
+
+    private void answer(HttpExchange exchange, String query, JsonNode variables) throws IOException {
+        if (query.contains("tournament(")) {
+            send(exchange, 200, json("{\"data\":{\"tournament\":{\"name\":\"Mock\",\"events\":[{\"slug\":\""
+                    + "tournament/mock/event/ultimate-singles\",\"name\":\"Ultimate Singles\"}]}}}"), null);
+            return;
+        }
+        if (query.contains(SetsQuery.alias(1) + ": sets(")) {
+            answerCoalesced(exchange, variables);
+            return;
+        }
+        if (query.contains("sets(")) {
+            int perPage = variables.path("perPage").asInt(SetsQuery.perPage());
+            if (perPage * SetsQuery.estimatedObjectsPerSet() > SetsQuery.COMPLEXITY_LIMIT) {
+                errors.incrementAndGet();
+                send(exchange, 200, json("{\"errors\":[{\"message\":\"Your query complexity is too high. A maximum of "
+                        + SetsQuery.COMPLEXITY_LIMIT + " objects may be returned by each request.\"}]}"), null);
+                return;
+            }
+            ServedEvent event = servedEvent(perPage);
+            List<byte[]> pages = event.fixture().pages();
+            int page = variables.path("page").asInt(1);
+            if (page < 1 || page > pages.size()) {
+                send(exchange, 200, json("{\"data\":{\"event\":{" + EVENT_STATE
+                        + "\"sets\":{\"pageInfo\":{\"totalPages\":" + pages.size() + "},\"nodes\":[]}}}}"), null);
+                return;
+            }
+            if (chance(slowPageRate)) {
+                sleep(slowPageMillis);
+            }
+            send(exchange, 200, pages.get(page - 1), event.gzippedPages().get(page - 1));
+            return;
+        }
+        if (query.contains("characters")) {
+            send(exchange, 200, charactersResponse(), null);
+            return;
+        }
+        if (query.contains("phases")) {
+            ServedEvent event = servedEvent(SetsQuery.perPage());
+            send(exchange, 200, event.phases(), event.gzippedPhases());
+            return;
+        }
+        errors.incrementAndGet();
+        send(exchange, 200, json("{\"errors\":[{\"message\":\"Unknown query\"}]}"), null);
+    }
+
+    // SetsQuery.coalescedSetsQuery: the sets object of each page under its alias
+    private void answerCoalesced(HttpExchange exchange, JsonNode variables) throws IOException {
+        int perPage = variables.path("perPage").asInt(SetsQuery.perPage());
+        int count = 0;
+        while (variables.has("page" + (count + 1))) {
+            count++;
+        }
+        if (1 + count * (1 + perPage * SetsQuery.estimatedObjectsPerSet()) > SetsQuery.COMPLEXITY_LIMIT) {
+            errors.incrementAndGet();
+            send(exchange, 200, json("{\"errors\":[{\"message\":\"Your query complexity is too high. A maximum of "
+                    + SetsQuery.COMPLEXITY_LIMIT + " objects may be returned by each request.\"}]}"), null);
+            return;
+        }
+        List<byte[]> pages = servedEvent(perPage).fixture().pages();
+        StringBuilder response = new StringBuilder("{\"data\":{\"event\":{" + EVENT_STATE);
+        for (int i = 1; i <= count; i++) {
+            int page = variables.path("page" + i).asInt(1);
+            String sets = page < 1 || page > pages.size()
+                    ? "{\"pageInfo\":{\"totalPages\":" + pages.size() + "},\"nodes\":[]}"
+                    : objectMapper.readTree(pages.get(page - 1)).path("data").path("event").path("sets").toString();
+            if (i > 1) {
+                response.append(',');
+            }
+            response.append('"').append(SetsQuery.alias(i)).append("\":").append(sets);
+        }
+        response.append("}}}");
+        if (chance(slowPageRate)) {
+            sleep(slowPageMillis);
+        }
+        send(exchange, 200, json(response.toString()), null);
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body, byte[] gzippedBody) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] sent = body;
+        if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            sent = gzippedBody != null ? gzippedBody : gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, sent.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(sent);
+        }
+        bytesSent.addAndGet(sent.length);
+    }
+
+    private ServedEvent servedEvent(int perPage) {
+        return eventsByPerPage.computeIfAbsent(perPage, _ -> {
+            Fixtures.EventFixture fixture = Fixtures.generate("mock-" + entrants, entrants, poolsStreamRate, perPage,
+                    SEED + entrants);
+            List<byte[]> gzippedPages = new ArrayList<>();
+            for (byte[] page : fixture.pages()) {
+                gzippedPages.add(gzip(page));
+            }
+            byte[] phases = phasesResponse(fixture.phases());
+            return new ServedEvent(fixture, gzippedPages, phases, gzip(phases));
+        });
+    }
+
+    private static byte[] phasesResponse(EventPhases phases) {
+        // The generated phase ids go up, so sorting them puts the first phase first like the API does
+        StringBuilder response = new StringBuilder("{\"data\":{\"event\":{\"id\":1,\"videogame\":{\"id\":"
+                + CharacterRegistry.ULTIMATE_ID + "},\"phases\":[");
+        int index = 0;
+        for (Map.Entry<String, Integer> phase : new TreeMap<>(phases.phaseIdToEntrants()).entrySet()) {
+            if (index > 0) {
+                response.append(',');
+            }
+            response.append("{\"id\":").append(phase.getKey())
+                    .append(",\"numSeeds\":").append(phase.getValue())
+                    .append(",\"name\":\"Phase ").append(++index).append("\"}");
+        }
+        response.append("]}}}");
+        return json(response.toString());
+    }
+
+    private static byte[] charactersResponse() {
+        CharacterRegistry ultimate = CharacterRegistry.ultimate();
+        StringBuilder response = new StringBuilder("{\"data\":{\"videogame\":{\"id\":" + ultimate.getVideogameId()
+                + ",\"characters\":[");
+        int[] ids = ultimate.ids();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                response.append(',');
+            }
+            response.append("{\"id\":").append(ids[i]).append(",\"name\":\"").append(ultimate.name(ids[i])).append("\"}");
+        }
+        response.append("]}}}");
+        return json(response.toString());
+    }
+
+    private boolean chance(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,45 @@
+package com.fubukicoeur.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fubukicoeur.ParseMode;
+import com.fubukicoeur.SetsPage;
+
+/**
+ * Parsing of every page of an event, what getAllStreamedSetDetails does with each response.
+ * Both parse modes read the same bytes, so TREE and STREAMING can be compared directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "TREE", "STREAMING" })
+    public ParseMode parseMode;
+
+    @Benchmark
+    public void parseEvent(FixtureState state, Blackhole blackhole) throws IOException {
+        Fixtures.EventFixture fixture = state.fixture;
+        for (byte[] page : fixture.pages()) {
+            SetsPage setsPage = parseMode.parser().parse(new ByteArrayInputStream(page), fixture.phases(), fixture.slug());
+            blackhole.consume(setsPage);
+        }
+    }
+}
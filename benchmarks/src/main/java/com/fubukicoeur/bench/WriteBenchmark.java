@@ -0,0 +1,57 @@
+package com.fubukicoeur.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fubukicoeur.OutputFormat;
+import com.fubukicoeur.TitleWriter;
+
+/**
+ * Writing the output file with TitleWriter.write in TXT, to the real file system (SetsPipeline writes the
+ * same lines page by page), toNullWriter shows the cost of the formatting alone without the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        output = Files.createTempFile("bench-sets", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void writeMatchesToFile(FixtureState state) throws IOException {
+        TitleWriter.write(state.matches, "Bench Event", output, OutputFormat.TXT);
+    }
+
+    @Benchmark
+    public void toNullWriter(FixtureState state) throws IOException {
+        TitleWriter.write(state.matches, "Bench Event", Writer.nullWriter(), OutputFormat.TXT);
+    }
+}
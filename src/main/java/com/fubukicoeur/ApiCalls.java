@@ -1,15 +1,23 @@
 package com.fubukicoeur;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -21,10 +29,27 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * this works with the MatchInfo class.
  */
 public class ApiCalls {
-  private final String apiToken; 
+  private final TokenPool tokens;
   private final String eventSlug; 
+  private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+  // 0 is SetsQuery.perPage()
+  private int perPage;
+  private boolean coalescePages;
+  private HttpTransport transport = HttpTransport.shared();
+  private ParseMode parseMode = ParseMode.STREAMING;
+  private ResponseCache cache = ResponseCache.shared();
+  private Path checkpointDir = FetchCheckpoint.DEFAULT_DIR;
+  // Phases don't change during an event, the watch mode asks for them once
+  private EventPhases watchPhases;
+  private URI apiUri = defaultApiUri();
+  // Outlives the scheduler, which is replaced when the transport or the URL change
+  private final RequestScheduler.Counts requestCounts = new RequestScheduler.Counts();
+  private RequestScheduler scheduler = new RequestScheduler(transport, apiUri, requestCounts);
   private static final String API_URL = "https://api.start.gg/gql/alpha"; 
+  // Lets the whole app (CLI and batch mode included) talk to a local server, like the mock of the benchmarks
+  private static final String API_URL_PROPERTY = "startgg.api.url";
   private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final int DEFAULT_MAX_CONCURRENCY = 4;
 
   /**
    * Constructor for this class.
@@ -33,202 +58,731 @@ public class ApiCalls {
    * @param eventSlug The slug of the event to query.
    */
   public ApiCalls(String apiToken, String eventSlug) {
-    this.apiToken = apiToken;
+    this(TokenPool.of(apiToken), eventSlug);
+  }
+
+  /**
+   * Constructor for this class with several API tokens, the requests are spread over their rate limits.
+   *
+   * @param tokens The API tokens, the pool can be shared by several ApiCalls.
+   * @param eventSlug The slug of the event to query.
+   */
+  public ApiCalls(TokenPool tokens, String eventSlug) {
+    this.tokens = tokens;
     this.eventSlug = eventSlug;
   }
 
+  /**
+   * Sets how many pages can be fetched at the same time once page 1 told us the total.
+   *
+   * @param maxConcurrency The max number of requests in flight, at least 1.
+   */
+  public void setMaxConcurrency(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1");
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Sets the number of sets asked per page, smaller pages come back sooner and a failed run loses less.
+   * The default is the biggest page the complexity limit allows, see SetsQuery.perPage.
+   *
+   * @param perPage The page size, 0 for the default.
+   */
+  public void setPerPage(int perPage) {
+    if (perPage != 0 && (perPage < SetsQuery.MIN_PER_PAGE || perPage > SetsQuery.MAX_PER_PAGE)) {
+      throw new IllegalArgumentException("perPage must be 0 or between " + SetsQuery.MIN_PER_PAGE + " and "
+          + SetsQuery.MAX_PER_PAGE);
+    }
+    this.perPage = perPage;
+  }
+
+  /**
+   * Asks several pages in one request (SetsQuery.coalescedSetsQuery) as long as they stay under the
+   * complexity limit, so one request of the rate limit brings several pages. The pages are still
+   * given to the handler one by one and in order. Off by default.
+   * A page of the default size already fills the limit, this helps with smaller pages (setPerPage).
+   *
+   * @param coalescePages true to coalesce the pages.
+   */
+  public void setCoalescePages(boolean coalescePages) {
+    this.coalescePages = coalescePages;
+  }
+
+  /**
+   * Replaces the process wide transport, for example to use other timeouts.
+   *
+   * @param transport The transport used for every request of this instance.
+   */
+  public void setTransport(HttpTransport transport) {
+    this.transport = transport;
+    this.scheduler = new RequestScheduler(transport, apiUri, requestCounts);
+  }
+
+  /**
+   * Points this instance at another GraphQL endpoint than start.gg, for example a local mock server.
+   * The default is the start.gg API, or the "startgg.api.url" system property if it is set.
+   *
+   * @param apiUrl The URL of the endpoint.
+   */
+  public void setApiUrl(String apiUrl) {
+    this.apiUri = URI.create(apiUrl);
+    this.scheduler = new RequestScheduler(transport, apiUri, requestCounts);
+  }
+
+  public String getApiUrl() {
+    return apiUri.toString();
+  }
+
+  private static URI defaultApiUri() {
+    return URI.create(System.getProperty(API_URL_PROPERTY, API_URL));
+  }
+
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Chooses how the sets pages are parsed, STREAMING by default.
+   * TREE is the old way, kept so both can be compared on the same responses.
+   *
+   * @param parseMode The parse mode.
+   */
+  public void setParseMode(ParseMode parseMode) {
+    this.parseMode = parseMode;
+  }
+
+  /**
+   * Sets the cache of pages, by default the one in the "cache" folder.
+   *
+   * @param cache The cache to use, null to always ask the API.
+   */
+  public void setCache(ResponseCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Sets where the pages of an unfinished run are kept, by default "cache/checkpoints".
+   * The next run of the same event starts from the first page that is missing there.
+   *
+   * @param checkpointDir The folder of the checkpoints, null to always start from page 1.
+   */
+  public void setCheckpointDir(Path checkpointDir) {
+    this.checkpointDir = checkpointDir;
+  }
+
   /**
    * Performs a POST request to the Start.gg API with the specified query and variables.
+   * The request goes through the scheduler, so it waits for the rate limit and is retried if needed.
    *
    * @param query The GraphQL query to execute.
    * @param variables The variables for the GraphQL query.
-   * @return The response body as a string.
+   * @return The parsed response body.
+   * @throws ApiException If the API answered with an error, GraphQL errors included.
    */
-  private String performPostRequest(String query, Map<String, Object> variables) throws Exception {
-    String requestBodyJson = objectMapper.writeValueAsString(Map.of("query", query, "variables", variables));
+  private JsonNode performPostRequest(String query, Map<String, Object> variables) throws Exception {
+    return performPostRequest(scheduler, tokens, query, variables);
+  }
 
-    HttpRequest request = HttpRequest.newBuilder()
-        .uri(URI.create(API_URL))
-        .header("Content-Type", "application/json")
-        .header("Authorization", "Bearer " + apiToken)
-        .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
-        .build();
+  private static JsonNode performPostRequest(RequestScheduler scheduler, TokenPool tokens, String query,
+      Map<String, Object> variables) throws Exception {
+    byte[] requestBodyJson = objectMapper.writeValueAsBytes(Map.of("query", query, "variables", variables));
+
+    return scheduler.execute(tokens, requestBodyJson, body -> {
+      JsonNode root = objectMapper.readTree(body);
+      RequestScheduler.throwIfErrors(root);
+      return root;
+    });
+  }
 
-    HttpClient client = HttpClient.newHttpClient();
-    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
 
-    return response.body();
+  /**
+   * Lists the events of a tournament, used by the batch mode to expand a tournament slug.
+   *
+   * @param apiToken The API token for authentication.
+   * @param tournamentSlug The slug of the tournament, like "tournament/genesis-x".
+   * @return The events of the tournament, in API order.
+   * @throws Exception If an error occurs while fetching the data.
+   */
+  public static List<TournamentEvent> getTournamentEvents(String apiToken, String tournamentSlug) throws Exception {
+    return getTournamentEvents(TokenPool.of(apiToken), tournamentSlug);
   }
 
+  /**
+   * Same as the other getTournamentEvents, with the API tokens of a pool.
+   */
+  public static List<TournamentEvent> getTournamentEvents(TokenPool tokens, String tournamentSlug) throws Exception {
+    RequestScheduler sharedScheduler = new RequestScheduler(HttpTransport.shared(), defaultApiUri());
+    JsonNode tournament = performPostRequest(sharedScheduler, tokens, SetsQuery.TOURNAMENT_EVENTS_QUERY,
+        Map.of("tournamentSlug", tournamentSlug)).path("data").path("tournament");
+    if (tournament.isMissingNode() || tournament.isNull()) {
+      throw new ApiException("Tournament not found: " + tournamentSlug, 200, false);
+    }
+
+    List<TournamentEvent> events = new ArrayList<>();
+    for (JsonNode event : tournament.path("events")) {
+      events.add(new TournamentEvent(event.path("slug").asText(), event.path("name").asText()));
+    }
+    return events;
+  }
+
+  /**
+   * An event of a tournament.
+   */
+  public record TournamentEvent(String slug, String name) {
+  }
 
   /**
    * Retrieves all streamed set details for the specified event.
+   * The phases and page 1 are asked at the same time, then the other pages are fetched
+   * concurrently (see setMaxConcurrency).
    *
-   * @param progressCallback Optional callback to report progress updates
+   * @param progressCallback Optional callback to report progress updates, called as pages complete
    * @return A list of MatchInfo objects containing details about each streamed match.
    * @throws Exception If an error occurs while fetching the data.
    */
   public List<MatchInfo> getAllStreamedSetDetails(App.ProgressCallback progressCallback) throws Exception {
-    // The query might not be the best, i don't really know i tried different queries untinl it worked
-    String query = """
-            query($eventSlug: String!, $page: Int!) {
-              event(slug: $eventSlug) {
-                phases {
-                  id
-                  numSeeds
-                  name
-                }
-                sets(page: $page, perPage: 30) { 
-                  pageInfo {
-                    totalPages
-                  }
-                  nodes {
-                    id
-                    fullRoundText
-                    stream {
-                      streamName
-                    }
-                    phaseGroup {
-                      phase {
-                        id
-                        name
-                      }
-                    }
-                    slots {
-                      entrant {
-                        name
-                        participants {
-                          player {
-                            gamerTag
-                          }
-                        }
-                      }
-                    }
-                    games {
-                      selections {
-                        selectionType
-                        selectionValue
-                        entrant {
-                          name
-                        }
-                      }
-                    }
-                  }
-                }
-              }
-            }
-        """;
-
     // We create a list that will store the matchs with a streamname element
     List<MatchInfo> matches = new ArrayList<>();
-    int page = 1;
-    int totalPages = 1;
-
-    Map<String, Integer> phaseNameToEntrants = new HashMap<>();
-    String firstPhaseId = null;
-    boolean multiplePhases = false;
+    fetchStreamedSetPages(Integer.MAX_VALUE, (page, totalPages, pageMatches) -> matches.addAll(pageMatches),
+        progressCallback);
+    return matches;
+  }
 
-    do {
-      if (progressCallback != null) {
-        progressCallback.onProgress(page, totalPages, eventSlug);
+  /**
+   * Same fetching as getAllStreamedSetDetails, but each page is given to the handler as soon as it and
+   * the pages before it are there, so nothing has to wait for the last page.
+   * The handler is called in page order, one page at a time. If it is slow (or blocks), fetching slows down too:
+   * at most maxPagesAhead pages are fetched and not handled yet.
+   *
+   * @param maxPagesAhead How many pages can wait for the handler, at least 1.
+   * @param handler Gets the streamed sets of each page.
+   * @param progressCallback Optional callback to report progress updates, called as pages complete
+   * @throws Exception If an error occurs while fetching the data or in the handler.
+   */
+  public void fetchStreamedSetPages(int maxPagesAhead, PageHandler handler, App.ProgressCallback progressCallback)
+      throws Exception {
+    if (maxPagesAhead < 1) {
+      throw new IllegalArgumentException("maxPagesAhead must be at least 1");
+    }
+    int totalPages = 1;
+    long fetchStart = System.nanoTime();
+    // Counted by this instance, the transport also sees the requests of the rest of the process
+    long requestsBefore = requestCounts.getRequests();
+    long tlsRequestsBefore = requestCounts.getTlsRequests();
+    long openedBefore = requestCounts.getConnectionsOpened();
+
+    if (progressCallback != null) {
+      progressCallback.onProgress(1, totalPages, eventSlug, 0, null);
+    }
+    // The number of pages is only known once page 1 is there
+    System.out.println("Fetching page 1 of sets for event: " + eventSlug);
+
+    // The phases are only needed for pages that are not in the cache. When page 1 is not,
+    // both requests go out together and page 1 only waits for them when it builds its MatchInfo
+    PhasesLoader phasesLoader = new PhasesLoader();
+    // A run of this event that failed before its last page left its pages here, we go on from there
+    FetchCheckpoint checkpoint = checkpointDir != null
+        ? new FetchCheckpoint(checkpointDir, apiUri.toString(), eventSlug, FetchCheckpoint.DEFAULT_MAX_AGE) : null;
+    if (checkpoint != null && !checkpoint.lock()) {
+      checkpoint = null;
+    }
+    int resumedPerPage = checkpoint != null ? checkpoint.resume() : -1;
+    if (resumedPerPage > 0) {
+      System.out.println("Resuming " + eventSlug + " from the pages of the last run");
+    }
+    int perPage = resumedPerPage > 0 ? resumedPerPage : this.perPage > 0 ? this.perPage : SetsQuery.perPage();
+    boolean fetchedFromApi = false;
+    boolean eventCompleted;
+
+    try {
+      SetsPage firstPage = checkpoint != null ? checkpoint.page(1) : null;
+      if (firstPage == null) {
+        firstPage = cachedPage(1, perPage);
       }
-      
-
-      System.out.println("Fetching page " + page + "/" + totalPages + " of sets for event: " + eventSlug);
-      
-      Map<String, Object> variables = Map.of("eventSlug", eventSlug, "page", page);
-      String response = performPostRequest(query, variables);
-      JsonNode root = objectMapper.readTree(response).path("data").path("event");
-
-      if (page == 1) {
-        JsonNode phasesNode = root.path("phases");
-        if (phasesNode.isArray()) {
-          multiplePhases = phasesNode.size() > 1;
-
-          for (int i = 0; i < phasesNode.size(); i++) {
-            JsonNode phaseNode = phasesNode.get(i);
-            String name = phaseNode.path("name").asText();
-            int entrants = phaseNode.path("numSeeds").asInt(0);
-            String id = phaseNode.path("id").asText();
-
-            phaseNameToEntrants.put(name, entrants);
-            if (i == 0) {
-              firstPhaseId = id; 
+      if (firstPage == null) {
+        phasesLoader.start();
+        while (true) {
+          try {
+            firstPage = fetchSetsPage(1, perPage, phasesLoader);
+            break;
+          } catch (ApiException e) {
+            int smallerPerPage = e.isComplexityError() ? SetsQuery.backOff(perPage) : -1;
+            if (smallerPerPage < 0) {
+              throw e;
             }
+            System.err.println("perPage " + perPage + " is too complex for the API, trying " + smallerPerPage);
+            perPage = smallerPerPage;
           }
         }
+        fetchedFromApi = true;
+        cachePage(1, perPage, firstPage);
+      }
+      if (checkpoint != null) {
+        checkpoint.start(perPage);
+        // A page from the checkpoint is already saved, one from the cache doesn't need to be
+        if (fetchedFromApi) {
+          checkpoint.save(1, firstPage);
+        }
+      }
+      totalPages = firstPage.totalPages();
+      eventCompleted = firstPage.eventCompleted();
+
+      if (progressCallback != null) {
+        reportProgress(progressCallback, 1, totalPages, fetchStart);
+      }
+      handler.onPage(1, totalPages, firstPage.matches());
+
+      if (totalPages > 1) {
+        PhasesLoader remainingPhases = firstPage.phases() != null ? new PhasesLoader(firstPage.phases()) : phasesLoader;
+        PagesSummary remaining = fetchRemainingPages(totalPages, perPage, remainingPhases, checkpoint,
+            maxPagesAhead, handler, progressCallback, fetchStart);
+        fetchedFromApi |= remaining.fetchedFromApi();
+        eventCompleted &= remaining.eventCompleted();
       }
+      if (checkpoint != null) {
+        checkpoint.clear();
+      }
+    } finally {
+      phasesLoader.cancel();
+      // Also when the run failed, the next one goes on from its pages
+      if (checkpoint != null) {
+        checkpoint.unlock();
+      }
+    }
+
+    // Once the event is completed nothing can change anymore, the pages never expire. All the sets of a
+    // page being completed is not enough, the next phase can still add sets to it
+    if (cache != null && fetchedFromApi && eventCompleted) {
+      List<String> pageKeys = new ArrayList<>(totalPages);
+      for (int page = 1; page <= totalPages; page++) {
+        pageKeys.add(pageKey(page, perPage));
+      }
+      cache.makePermanent(pageKeys);
+    }
+
+    long requests = requestCounts.getRequests() - requestsBefore;
+    long tlsRequests = requestCounts.getTlsRequests() - tlsRequestsBefore;
+    long opened = requestCounts.getConnectionsOpened() - openedBefore;
+    String connections = tlsRequests > 0
+        ? ", " + opened + " connections opened, " + Math.max(0, tlsRequests - opened) + " reused" : "";
+    System.out.println("Done with " + eventSlug + ": " + requests + " requests" + connections);
+  }
+
+  /**
+   * The streamed sets of the event as a Flow.Publisher, fetched as fast as the subscriber asks for them
+   * (see StreamedSetsPublisher). Up to maxConcurrency pages can wait for the subscriber.
+   *
+   * @return A publisher, each subscriber gets its own fetch of the event.
+   */
+  public Flow.Publisher<MatchInfo> streamedSets() {
+    return new StreamedSetsPublisher(this, maxConcurrency);
+  }
+
+  /**
+   * Gets the streamed sets of the event page by page, see fetchStreamedSetPages.
+   */
+  @FunctionalInterface
+  public interface PageHandler {
+    /**
+     * @param page The page number, 1 first.
+     * @param totalPages The number of pages of the event.
+     * @param matches The streamed sets of this page.
+     */
+    void onPage(int page, int totalPages, List<MatchInfo> matches) throws Exception;
+  }
 
-      JsonNode setsNode = root.path("sets");
-      JsonNode nodes = setsNode.path("nodes");
+  /**
+   * Returns the streamed sets that changed since the given time, used by the watch mode.
+   * During an event this is usually one small page instead of the whole event.
+   * Nothing is cached here, the sets of a running event change all the time.
+   *
+   * @param updatedAfterEpochSeconds Only sets updated after this time are returned.
+   * @return The streamed sets updated since then, in API order.
+   * @throws Exception If an error occurs while fetching the data.
+   */
+  public List<MatchInfo> getStreamedSetsUpdatedAfter(long updatedAfterEpochSeconds) throws Exception {
+    if (watchPhases == null) {
+      watchPhases = fetchPhases();
+    }
+    PhasesLoader phases = new PhasesLoader(watchPhases);
+    int perPage = SetsQuery.perPage();
+
+    List<MatchInfo> matches = new ArrayList<>();
+    int totalPages = 1;
+    for (int page = 1; page <= totalPages; page++) {
+      Map<String, Object> variables = Map.of("eventSlug", eventSlug, "page", page, "perPage", perPage,
+          "updatedAfter", updatedAfterEpochSeconds);
+      SetsPage setsPage = fetchSetsPage(SetsQuery.UPDATED_SETS_QUERY, variables, phases);
+      totalPages = setsPage.totalPages();
+      matches.addAll(setsPage.matches());
+    }
+    return matches;
+  }
 
-      if (page == 1) {
-        totalPages = setsNode.path("pageInfo").path("totalPages").asInt(1);
+  /**
+   * Fetches pages 2 to totalPages at the same time, at most maxConcurrency requests in flight.
+   * Each page runs on its own virtual thread and the handler gets them back in page order,
+   * exactly like when we fetched one page after the other.
+   * Pages found in the checkpoint or the cache don't take a request slot.
+   *
+   * @param totalPages The number of pages returned by page 1.
+   * @param perPage The page size that page 1 was fetched with.
+   * @param phases The phases of the event, only fetched if a page is not in the cache.
+   * @param checkpoint Where the pages of this run are saved, null if there is none.
+   * @param maxPagesAhead How many pages can be done but not handled yet.
+   * @param handler Gets each page, in order.
+   * @param progressCallback Optional callback, called each time a page is done.
+   * @param fetchStart When page 1 was asked (System.nanoTime), for the throughput given to the callback.
+   * @return Whether a page cost a request and whether the event was completed for every page.
+   */
+  private PagesSummary fetchRemainingPages(int totalPages, int perPage, PhasesLoader phases,
+      FetchCheckpoint checkpoint, int maxPagesAhead, PageHandler handler, App.ProgressCallback progressCallback,
+      long fetchStart) throws Exception {
+    Semaphore permits = new Semaphore(maxConcurrency);
+    // Taken in page order before a page starts, given back when the handler is done with it
+    Semaphore window = new Semaphore(Math.min(maxPagesAhead, totalPages));
+    // The pages of one task, asked in one request when they are not on the disk
+    int pagesPerTask = coalescePages
+        ? Math.min(SetsQuery.pagesPerRequest(perPage), Math.min(maxPagesAhead, totalPages))
+        : 1;
+    AtomicInteger completedPages = new AtomicInteger(1);
+    AtomicBoolean fetchedFromApi = new AtomicBoolean();
+    AtomicBoolean eventCompleted = new AtomicBoolean(true);
+    AtomicBoolean failed = new AtomicBoolean();
+    PageReorderer reorderer = new PageReorderer(totalPages, handler, window);
+    List<Future<Void>> futures = new ArrayList<>(totalPages - 1);
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    try {
+      for (int page = 2; page <= totalPages; page += pagesPerTask) {
+        final int firstPage = page;
+        final int lastPage = Math.min(totalPages, page + pagesPerTask - 1);
+        window.acquire(lastPage - firstPage + 1);
+        if (failed.get()) {
+          break;
+        }
+        futures.add(executor.submit(() -> {
+          try {
+            int count = lastPage - firstPage + 1;
+            SetsPage[] setsPages = new SetsPage[count];
+            List<Integer> missing = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+              setsPages[i] = checkpoint != null ? checkpoint.page(firstPage + i) : null;
+              if (setsPages[i] == null) {
+                setsPages[i] = cachedPage(firstPage + i, perPage);
+              }
+              if (setsPages[i] == null) {
+                missing.add(firstPage + i);
+              }
+            }
+            if (!missing.isEmpty()) {
+              List<SetsPage> fetched;
+              permits.acquire();
+              try {
+                // The same progress lines as without coalescing, one per page
+                for (int missingPage : missing) {
+                  System.out.println("Fetching page " + missingPage + "/" + totalPages + " of sets for event: "
+                      + eventSlug);
+                }
+                fetched = fetchSetsPages(missing, perPage, phases);
+              } finally {
+                permits.release();
+              }
+              for (int i = 0; i < missing.size(); i++) {
+                int missingPage = missing.get(i);
+                setsPages[missingPage - firstPage] = fetched.get(i);
+                cachePage(missingPage, perPage, fetched.get(i));
+                // Only what cost a request, the pages of the cache are still there for the next run
+                if (checkpoint != null) {
+                  checkpoint.save(missingPage, fetched.get(i));
+                }
+              }
+              fetchedFromApi.set(true);
+            }
+            for (int i = 0; i < count; i++) {
+              if (!setsPages[i].eventCompleted()) {
+                eventCompleted.set(false);
+              }
+              reportCompletedPage(progressCallback, completedPages, totalPages, fetchStart);
+              reorderer.done(firstPage + i, setsPages[i]);
+            }
+            return null;
+          } catch (Exception e) {
+            // Wakes up the loop above if it waits for the window
+            failed.set(true);
+            window.release(totalPages);
+            throw e;
+          }
+        }));
       }
 
-      for (JsonNode setNode : nodes) {
-        if (setNode.path("stream").isNull()) continue;
+      for (Future<Void> future : futures) {
+        getUnwrapped(future);
+      }
+      return new PagesSummary(fetchedFromApi.get(), eventCompleted.get());
+    } finally {
+      // If a page failed there is no point in letting the others run
+      executor.shutdownNow();
+    }
+  }
 
-        String round = setNode.path("fullRoundText").asText("Unknown");
-        JsonNode phaseNode = setNode.path("phaseGroup").path("phase");
+  private void reportCompletedPage(App.ProgressCallback progressCallback, AtomicInteger completedPages, int totalPages,
+      long fetchStart) {
+    if (progressCallback == null) {
+      completedPages.incrementAndGet();
+      return;
+    }
+    // Synchronized so the callback never sees the count going backward
+    synchronized (completedPages) {
+      reportProgress(progressCallback, completedPages.incrementAndGet(), totalPages, fetchStart);
+    }
+  }
 
-        String phaseName = phaseNode.path("name").asText("Unknown");
-        String phaseId = phaseNode.path("id").asText("");
-        int entrants = phaseNameToEntrants.getOrDefault(phaseName, 0);
-        boolean isFirstPhase = phaseId.equals(firstPhaseId);
+  /**
+   * Gives the callback the pages done per second since page 1 was asked, and the time left at that speed.
+   * Pages read from the cache or a checkpoint count too, the estimate is only as good as the mix of both.
+   */
+  private void reportProgress(App.ProgressCallback progressCallback, int donePages, int totalPages, long fetchStart) {
+    double seconds = (System.nanoTime() - fetchStart) / 1e9;
+    double pagesPerSecond = seconds > 0 ? donePages / seconds : 0;
+    Duration eta = pagesPerSecond > 0
+        ? Duration.ofMillis((long) ((totalPages - donePages) / pagesPerSecond * 1000))
+        : null;
+    progressCallback.onProgress(donePages, totalPages, eventSlug, pagesPerSecond, eta);
+  }
 
-        // Players
-        List<String> playerTags = new ArrayList<>();
-        List<String> entrantNames = new ArrayList<>();
-        for (JsonNode slot : setNode.path("slots")) {
-          JsonNode entrant = slot.path("entrant");
-          if (entrant.isMissingNode()) continue;
+  /**
+   * Fetches the phases of the event with their own small query, they are the same for every page.
+   * The characters of the game of the event come with them, only asked the first time we see that game.
+   */
+  private EventPhases fetchPhases() throws Exception {
+    JsonNode event = performPostRequest(SetsQuery.PHASES_QUERY, Map.of("eventSlug", eventSlug))
+        .path("data").path("event");
+    if (event.isMissingNode() || event.isNull()) {
+      throw new ApiException("Event not found: " + eventSlug, 200, false);
+    }
+    int videogameId = event.path("videogame").path("id").asInt(CharacterRegistry.ULTIMATE_ID);
+    CharacterRegistry characters = CharacterRegistry.forVideogame(videogameId, this::fetchCharacters);
+    return EventPhases.fromNode(event.path("phases")).withCharacters(characters);
+  }
 
-          JsonNode participants = entrant.path("participants");
-          if (!participants.isArray() || participants.size() == 0) continue;
+  private Map<Integer, String> fetchCharacters(int videogameId) throws Exception {
+    JsonNode videogame = performPostRequest(SetsQuery.CHARACTERS_QUERY, Map.of("videogameId", videogameId))
+        .path("data").path("videogame");
+    Map<Integer, String> characters = new HashMap<>();
+    for (JsonNode character : videogame.path("characters")) {
+      characters.put(character.path("id").asInt(), character.path("name").asText());
+    }
+    if (characters.isEmpty()) {
+      throw new ApiException("No characters for the game " + videogameId, 200, false);
+    }
+    return characters;
+  }
 
-          JsonNode player = participants.get(0).path("player");
-          if (player.isMissingNode() || player.path("gamerTag").isMissingNode()) continue;
+  /**
+   * Fetches one page of sets and parses it with the parser of the current parse mode.
+   *
+   * @param page The page to fetch.
+   * @param perPage The page size.
+   * @param phases The phases of the event, the parser waits for them if they are still being fetched.
+   */
+  private SetsPage fetchSetsPage(int page, int perPage, PhasesLoader phases) throws Exception {
+    Map<String, Object> variables = Map.of("eventSlug", eventSlug, "page", page, "perPage", perPage);
+    return fetchSetsPage(SetsQuery.SETS_QUERY, variables, phases);
+  }
 
-          entrantNames.add(entrant.path("name").asText());
-          playerTags.add(player.path("gamerTag").asText());
-        }
+  private SetsPage fetchSetsPage(String query, Map<String, Object> variables, PhasesLoader phases) throws Exception {
+    byte[] requestBodyJson = objectMapper.writeValueAsBytes(Map.of("query", query, "variables", variables));
+    SetsPageParser parser = parseMode.parser();
+
+    return scheduler.execute(tokens, requestBodyJson, body -> {
+      EventPhases eventPhases = waitForPhases(phases);
+      FetchEvents.PageParse parseEvent = new FetchEvents.PageParse();
+      parseEvent.begin();
+      long parseStart = System.nanoTime();
+      SetsPage setsPage = parser.parse(body, eventPhases, eventSlug);
+      recordParse(parseEvent, parseStart, (Integer) variables.get("page"), List.of(setsPage));
+      return setsPage;
+    });
+  }
 
-        if (playerTags.size() < 2 || entrantNames.size() < 2) continue;
+  /**
+   * Fetches several pages of sets, in one coalesced request when there are more than one.
+   * If the API finds the request too complex, each half is asked on its own.
+   *
+   * @param pages The pages to fetch, not always consecutive (the others can be on the disk).
+   * @return The parsed pages, in the same order.
+   */
+  private List<SetsPage> fetchSetsPages(List<Integer> pages, int perPage, PhasesLoader phases) throws Exception {
+    if (pages.size() == 1) {
+      return List.of(fetchSetsPage(pages.get(0), perPage, phases));
+    }
+    Map<String, Object> variables = new HashMap<>();
+    variables.put("eventSlug", eventSlug);
+    variables.put("perPage", perPage);
+    for (int i = 0; i < pages.size(); i++) {
+      variables.put("page" + (i + 1), pages.get(i));
+    }
+    byte[] requestBodyJson = objectMapper.writeValueAsBytes(
+        Map.of("query", SetsQuery.coalescedSetsQuery(pages.size()), "variables", variables));
+    SetsPageParser parser = parseMode.parser();
+
+    try {
+      return scheduler.execute(tokens, requestBodyJson, body -> {
+        EventPhases eventPhases = waitForPhases(phases);
+        FetchEvents.PageParse parseEvent = new FetchEvents.PageParse();
+        parseEvent.begin();
+        long parseStart = System.nanoTime();
+        List<SetsPage> setsPages = parser.parsePages(body, eventPhases, eventSlug, pages.size());
+        recordParse(parseEvent, parseStart, pages.get(0), setsPages);
+        return setsPages;
+      });
+    } catch (ApiException e) {
+      if (!e.isComplexityError()) {
+        throw e;
+      }
+      int half = pages.size() / 2;
+      System.err.println(pages.size() + " pages in one request are too complex for the API, trying " + half);
+      List<SetsPage> setsPages = new ArrayList<>(fetchSetsPages(pages.subList(0, half), perPage, phases));
+      setsPages.addAll(fetchSetsPages(pages.subList(half, pages.size()), perPage, phases));
+      return setsPages;
+    }
+  }
 
-        // Character selections
-        Map<String, Set<String>> charactersUsed = new HashMap<>();
-        for (JsonNode game : setNode.path("games")) {
-          for (JsonNode sel : game.path("selections")) {
-            if (!"CHARACTER".equals(sel.path("selectionType").asText())) continue;
+  private EventPhases waitForPhases(PhasesLoader phases) throws IOException {
+    try {
+      return getUnwrapped(phases.start());
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Could not fetch the phases of " + eventSlug, e);
+    }
+  }
 
-            String entrantName = sel.path("entrant").path("name").asText();
-            String charId = sel.path("selectionValue").asText();
+  /**
+   * Adds a parsed response to the metrics and the flight recording, a coalesced one is one event.
+   *
+   * @param firstPage The first page of the response.
+   */
+  private void recordParse(FetchEvents.PageParse parseEvent, long parseStart, int firstPage, List<SetsPage> setsPages) {
+    long parseNanos = System.nanoTime() - parseStart;
+    int kept = 0;
+    int skipped = 0;
+    for (SetsPage setsPage : setsPages) {
+      kept += setsPage.matches().size();
+      skipped += setsPage.setCount() - setsPage.matches().size();
+    }
+    parseEvent.end();
+    if (parseEvent.shouldCommit()) {
+      parseEvent.eventSlug = eventSlug;
+      parseEvent.page = firstPage;
+      parseEvent.setsKept = kept;
+      parseEvent.setsSkipped = skipped;
+      parseEvent.commit();
+    }
+    FetchMetrics.get().pageParsed(parseNanos, kept, skipped);
+  }
 
-            charactersUsed.computeIfAbsent(entrantName, _ -> new HashSet<>()).add(charId);
-          }
-        }
+  private SetsPage cachedPage(int page, int perPage) {
+    if (cache == null) {
+      return null;
+    }
+    return cache.get(pageKey(page, perPage)).orElse(null);
+  }
 
-        Set<String> player1Chars = charactersUsed.getOrDefault(entrantNames.get(0), Set.of());
-        Set<String> player2Chars = charactersUsed.getOrDefault(entrantNames.get(1), Set.of());
-
-        MatchInfo match = new MatchInfo(
-            round,
-            playerTags.get(0),
-            playerTags.get(1),
-            player1Chars,
-            player2Chars,
-            multiplePhases,
-            entrants,
-            isFirstPhase
-        );
-
-        matches.add(match);
+  private void cachePage(int page, int perPage, SetsPage setsPage) {
+    if (cache != null) {
+      cache.put(pageKey(page, perPage), setsPage, false);
+    }
+  }
+
+  private String pageKey(int page, int perPage) {
+    return ResponseCache.pageKey(apiUri.toString(), eventSlug, SetsQuery.SETS_QUERY, perPage, page);
+  }
+
+  /**
+   * Future.get, but throws the real error instead of the ExecutionException wrapper,
+   * we want the real message in the UI.
+   */
+  private static <T> T getUnwrapped(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception cause) {
+        throw cause;
       }
+      throw e;
+    }
+  }
 
-      page++;
-    } while (page <= totalPages);
+  /**
+   * What we need to know about the pages once they are all handled.
+   */
+  private record PagesSummary(boolean fetchedFromApi, boolean eventCompleted) {
+  }
 
-    return matches;
+  /**
+   * Gives the pages to the handler in page order, whatever order they finish in.
+   * A page that finishes early waits here until the pages before it are handled.
+   */
+  private static final class PageReorderer {
+    private final SetsPage[] waiting;
+    private final PageHandler handler;
+    private final Semaphore window;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int nextPage = 2;
+
+    private PageReorderer(int totalPages, PageHandler handler, Semaphore window) {
+      this.waiting = new SetsPage[totalPages + 1];
+      this.handler = handler;
+      this.window = window;
+    }
+
+    private void done(int page, SetsPage setsPage) throws Exception {
+      lock.lock();
+      try {
+        waiting[page] = setsPage;
+        while (nextPage < waiting.length && waiting[nextPage] != null) {
+          SetsPage next = waiting[nextPage];
+          waiting[nextPage] = null;
+          handler.onPage(nextPage, waiting.length - 1, next.matches());
+          nextPage++;
+          window.release();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Fetches the phases the first time they are needed, then gives the same result to every page.
+   */
+  private final class PhasesLoader {
+    private final FutureTask<EventPhases> task;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private PhasesLoader() {
+      this.task = new FutureTask<>(ApiCalls.this::fetchPhases);
+    }
+
+    private PhasesLoader(EventPhases knownPhases) {
+      this.task = new FutureTask<>(() -> knownPhases);
+      this.task.run();
+      this.started.set(true);
+    }
+
+    private Future<EventPhases> start() {
+      if (started.compareAndSet(false, true)) {
+        Thread.ofVirtual().start(task);
+      }
+      return task;
+    }
+
+    private void cancel() {
+      task.cancel(true);
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Error returned by the start.gg API, either as an HTTP status or as a GraphQL "errors" payload.
+ */
+public class ApiException extends IOException {
+    private final int statusCode;
+    private final boolean rateLimited;
+
+    /**
+     * @param message The message given by the API.
+     * @param statusCode The HTTP status of the response.
+     * @param rateLimited true if the API said we sent too many requests.
+     */
+    public ApiException(String message, int statusCode, boolean rateLimited) {
+        super(message);
+        this.statusCode = statusCode;
+        this.rateLimited = rateLimited;
+    }
+
+    /**
+     * Builds the exception for an error message found in a response body.
+     * start.gg does not give an error code for the rate limit, only a message like "Rate limit exceeded - api-token".
+     *
+     * @param message The error message.
+     * @param statusCode The HTTP status of the response.
+     * @return The exception to throw.
+     */
+    public static ApiException fromMessage(String message, int statusCode) {
+        boolean rateLimited = statusCode == 429
+                || (message != null && message.toLowerCase(Locale.ROOT).contains("rate limit"));
+        return new ApiException(message, statusCode, rateLimited);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * start.gg refuses queries that could return more than 1000 objects, the only fix is a smaller page.
+     *
+     * @return true if the API refused the query because of its complexity.
+     */
+    public boolean isComplexityError() {
+        String message = getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains("complexity");
+    }
+
+    /**
+     * start.gg answers a revoked or mistyped token with a 401 and "Invalid authentication token".
+     * A 403 alone is not enough, it can be about the request (a private event for example)
+     * and the token would be dropped for good.
+     *
+     * @return true if the API refused the token itself, another token could work.
+     */
+    public boolean isAuthError() {
+        if (statusCode == 401) {
+            return true;
+        }
+        String message = getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains("authentication token");
+    }
+
+    /**
+     * @return true if sending the same request again later could work.
+     */
+    public boolean isRetryable() {
+        return rateLimited || statusCode >= 500;
+    }
+}
@@ -11,7 +11,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -32,35 +42,31 @@ public class App {
 
     private static final String TOKEN_FILE = "token.txt";
     private static final String IMAGE_PATH = "src\\main\\resources\\guide.png";
+    private static final String FONT_PATH = "src\\main\\resources\\CodeNext-ExtraBold.ttf";
+    private static final long WATCH_INTERVAL_SECONDS = 30;
 
     public static void main(String[] args) {
+        // With arguments we run the command line mode, it never touches AWT or Swing
+        if (args.length > 0) {
+            System.exit(Cli.run(args));
+        }
+
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Start.gg Vod Titles Generator");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(600, 500);
+            frame.setSize(600, 780);
             frame.setLocationRelativeTo(null);
             frame.setLayout(new BorderLayout());
 
+            // The font is loaded once and shared by every component
+            Font codeNextFont = loadCodeNextFont();
+
             // Menu bar
             JMenuBar menuBar = new JMenuBar();
             JMenu tokenMenu = new JMenu("Token");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                tokenMenu.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            tokenMenu.setFont(codeNextFont);
             JMenuItem tokenItem = new JMenuItem("Register API Token");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                tokenItem.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            tokenItem.setFont(codeNextFont);
             tokenMenu.add(tokenItem);
             menuBar.add(tokenMenu);
             frame.setJMenuBar(menuBar);
@@ -76,18 +82,12 @@ public class App {
             guidePanel.setAlignmentX(Component.CENTER_ALIGNMENT);
             centerPanel.add(guidePanel);
             centerPanel.add(Box.createRigidArea(new Dimension(0, 10)));
-            guidePanel.setImage(new ImageIcon(IMAGE_PATH).getImage());
+            URL guideUrl = App.class.getResource("/guide.png");
+            guidePanel.setImage((guideUrl != null ? new ImageIcon(guideUrl) : new ImageIcon(IMAGE_PATH)).getImage());
 
             // Event Slug label
-            JLabel slugLabel = new JLabel("Event Slug:");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                slugLabel.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            JLabel slugLabel = new JLabel("Event Slug (or several separated by commas, or a tournament slug):");
+            slugLabel.setFont(codeNextFont);
             slugLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
             centerPanel.add(slugLabel);
             centerPanel.add(Box.createRigidArea(new Dimension(0, 5)));
@@ -102,15 +102,8 @@ public class App {
             // Event label
             JLabel eventLabel = new JLabel("Event name:");
             JLabel eventLabel2 = new JLabel("(use a reduced version for YouTube 100 characters limit)");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                eventLabel.setFont(codeNextFont);
-                eventLabel2.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            eventLabel.setFont(codeNextFont);
+            eventLabel2.setFont(codeNextFont);
             eventLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
             eventLabel2.setAlignmentX(Component.CENTER_ALIGNMENT);
             centerPanel.add(eventLabel);
@@ -126,46 +119,54 @@ public class App {
 
             // Progress label
             JLabel progressLabel = new JLabel(" ");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                progressLabel.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            progressLabel.setFont(codeNextFont);
             progressLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
             centerPanel.add(progressLabel);
             centerPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
             // Generate button
             JButton generateButton = new JButton("Generate");
-            try {
-                Font codeNextFont = Font.createFont(Font.TRUETYPE_FONT,
-                        new File("src\\main\\resources\\CodeNext-ExtraBold.ttf"));
-                codeNextFont = codeNextFont.deriveFont(Font.PLAIN, 12f);
-                generateButton.setFont(codeNextFont);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            generateButton.setFont(codeNextFont);
             generateButton.setAlignmentX(Component.CENTER_ALIGNMENT);
             centerPanel.add(generateButton);
+            centerPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+
+            // Watch button, for live events
+            JButton watchButton = new JButton("Watch");
+            watchButton.setFont(codeNextFont);
+            watchButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+            centerPanel.add(watchButton);
+
+            // Results table, filled while Generate runs
+            ResultsPanel resultsPanel = new ResultsPanel(codeNextFont);
 
             // Load saved token
             String[] savedToken = { loadToken() };
 
             // Token menu action
             tokenItem.addActionListener(_ -> {
-                String input = JOptionPane.showInputDialog(frame, "Enter your API Token:",
-                        savedToken[0] != null ? savedToken[0] : "");
+                // Several tokens are separated by commas here and saved one per line
+                String input = JOptionPane.showInputDialog(frame, "Enter your API Token (several separated by commas):",
+                        savedToken[0] != null ? String.join(", ", savedToken[0].strip().split("\\R")) : "");
                 if (input != null && !input.trim().isEmpty()) {
-                    savedToken[0] = input.trim();
+                    savedToken[0] = String.join(System.lineSeparator(), input.trim().split("\\s*,\\s*"));
                     saveToken(savedToken[0]);
                 }
             });
 
-            // Generate button action
+            // Generate button action, the button is a Cancel button while the worker thread runs
+            Thread[] generateThread = { null };
+            AtomicBoolean[] generateCancelled = { null };
             generateButton.addActionListener((ActionEvent e) -> {
+                if (generateThread[0] != null) {
+                    // The pages fetched so far stay in the checkpoint, the next Generate goes on from there
+                    generateCancelled[0].set(true);
+                    generateThread[0].interrupt();
+                    generateButton.setEnabled(false);
+                    generateButton.setText("Cancelling...");
+                    return;
+                }
+
                 String slug = slugField.getText().trim();
                 if (slug.isEmpty() || savedToken[0] == null || savedToken[0].isEmpty()) {
                     JOptionPane.showMessageDialog(frame, "Invalid Slug or Token.", "Error",
@@ -180,70 +181,215 @@ public class App {
                     return;
                 }
 
-                generateButton.setEnabled(false);
-                generateButton.setText("Generating...");
+                generateButton.setText("Cancel");
+                // Both would write sets.txt, Watch waits for the end of this run
+                watchButton.setEnabled(false);
                 progressLabel.setText("Initializing...");
+                Path output = Path.of("sets.txt");
+                int run = resultsPanel.start(output);
+                AtomicBoolean cancelled = new AtomicBoolean();
+                generateCancelled[0] = cancelled;
+                // Puts the button back, on the EDT once the worker thread is over
+                Runnable resetGenerate = () -> {
+                    resultsPanel.finish();
+                    generateThread[0] = null;
+                    generateCancelled[0] = null;
+                    generateButton.setEnabled(true);
+                    generateButton.setText("Generate");
+                    watchButton.setEnabled(true);
+                    progressLabel.setText(" "); // Clear progress text
+                };
+
+                // Several slugs separated by commas, or a whole tournament: one file per event
+                List<String> slugs = Arrays.stream(slug.split(","))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .toList();
+                if (slugs.size() > 1 || BatchRunner.isTournamentSlug(slug)) {
+                    generateThread[0] = new Thread(() -> runBatch(frame, progressLabel, savedToken[0], slugs, eventName,
+                            cancelled, resetGenerate));
+                    generateThread[0].start();
+                    return;
+                }
 
-                new Thread(() -> {
+                generateThread[0] = new Thread(() -> {
                     try {
                         // Create a progress callback to update the UI
-                        ProgressCallback progressCallback = (currentPage, totalPages, eventSlug) -> {
-                            SwingUtilities.invokeLater(() -> {
-                                progressLabel.setText("Fetching page " + currentPage + "/" + totalPages
-                                        + " of sets for event: " + eventSlug);
-                            });
-                        };
+                        ProgressCallback progressCallback = labelProgress(progressLabel);
 
-                        ApiCalls api = new ApiCalls(savedToken[0], slug);
-                        List<MatchInfo> matches = api.getAllStreamedSetDetails(progressCallback);
+                        // Each page is written to sets.txt as soon as it's fetched, and shown in the table
+                        ApiCalls api = new ApiCalls(TokenPool.parse(savedToken[0]), slug);
+                        SetsPipeline pipeline = new SetsPipeline(api, eventName, output);
+                        // template.txt is read each time so it can be edited while the app is open
+                        TitleTemplate template = TitleTemplate.fromFileOrDefault(TitleTemplate.DEFAULT_FILE);
+                        pipeline.setTemplate(template);
+                        // Searchable later with Cli --search, indexed page by page like the table is filled
+                        SetIndex index = SetIndex.shared();
+                        SetIndex.EventWriter writer = index != null ? index.writeEventQuietly(slug, eventName) : null;
+                        try (SetIndex.EventWriter indexed = writer) {
+                            pipeline.setPageWrittenListener((_, _, matches, _) -> {
+                                if (indexed != null) {
+                                    indexed.add(matches);
+                                }
+                                resultsPanel.getModel().addLater(run, eventName, matches, template);
+                            });
+                            pipeline.run(progressCallback);
+                            if (indexed != null) {
+                                indexed.commit();
+                            }
+                        }
 
                         SwingUtilities.invokeLater(() -> {
-                            progressLabel.setText("Writing to file...");
+                            resetGenerate.run();
+                            JOptionPane.showMessageDialog(frame, "sets.txt file generated successfully in app folder",
+                                    "Success",
+                                    JOptionPane.INFORMATION_MESSAGE);
+                        });
+                    } catch (Exception ex) {
+                        SwingUtilities.invokeLater(() -> {
+                            resetGenerate.run();
+                            if (cancelled.get()) {
+                                progressLabel.setText("Cancelled, Generate again to go on from where it stopped");
+                                return;
+                            }
+                            JOptionPane.showMessageDialog(frame, "Error : " + ex.getMessage()
+                                    + "\nThe pages already fetched are kept, Generate again to go on from there.",
+                                    "Error", JOptionPane.ERROR_MESSAGE);
                         });
+                    }
+                });
+                generateThread[0].start();
+            });
+
+            // Watch button action: poll the event until the button is pressed again
+            ScheduledExecutorService[] watchExecutor = { null };
+            watchButton.addActionListener((ActionEvent e) -> {
+                if (watchExecutor[0] != null) {
+                    watchExecutor[0].shutdownNow();
+                    watchExecutor[0] = null;
+                    watchButton.setText("Watch");
+                    // Watch can only start when no Generate runs, so the button is back to Generate
+                    generateButton.setEnabled(true);
+                    generateButton.setText("Generate");
+                    progressLabel.setText(" ");
+                    return;
+                }
+                if (generateThread[0] != null) {
+                    return;
+                }
+
+                String slug = slugField.getText().trim();
+                String eventName = eventField.getText().trim();
+                if (slug.isEmpty() || savedToken[0] == null || savedToken[0].isEmpty() || eventName.isEmpty()) {
+                    JOptionPane.showMessageDialog(frame, "Invalid Slug, Token or Event name.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
 
-                        // Write matches to file manually
-                        writeMatchesToFile(matches, eventName, "sets.txt");
+                SetWatcher watcher = new SetWatcher(new ApiCalls(TokenPool.parse(savedToken[0]), slug), eventName,
+                        Path.of("sets.txt"));
+                try {
+                    watcher.setTemplate(TitleTemplate.fromFileOrDefault(TitleTemplate.DEFAULT_FILE));
+                } catch (IOException | IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(frame, "Error in template.txt : " + ex.getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                ProgressCallback progressCallback = labelProgress(progressLabel);
+
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+                watchExecutor[0] = executor;
+                watchButton.setText("Stop watching");
+                generateButton.setEnabled(false);
+                progressLabel.setText("Watching...");
 
+                executor.scheduleWithFixedDelay(() -> {
+                    try {
+                        int written = watcher.poll(progressCallback);
+                        int total = watcher.getWatchedSetCount();
                         SwingUtilities.invokeLater(() -> {
-                            JOptionPane.showMessageDialog(frame, "sets.txt file generated successfully in app folder",
-                                    "Success",
-                                    JOptionPane.INFORMATION_MESSAGE);
-                            generateButton.setEnabled(true);
-                            generateButton.setText("Generate");
-                            progressLabel.setText(" "); // Clear progress text
+                            progressLabel.setText("Watching: " + total + " sets in sets.txt (+" + written
+                                    + " last poll)");
                         });
                     } catch (Exception ex) {
+                        // We keep watching, the next poll can work (venue Wi-Fi...)
                         SwingUtilities.invokeLater(() -> {
-                            JOptionPane.showMessageDialog(frame, "Error : " + ex.getMessage(), "Error",
-                                    JOptionPane.ERROR_MESSAGE);
-                            generateButton.setEnabled(true);
-                            generateButton.setText("Generate");
-                            progressLabel.setText(" "); // Clear progress text
+                            progressLabel.setText("Watching, last poll failed: " + ex.getMessage());
                         });
                     }
-                }).start();
+                }, 0, WATCH_INTERVAL_SECONDS, TimeUnit.SECONDS);
             });
 
             frame.add(centerPanel, BorderLayout.CENTER);
+            frame.add(resultsPanel, BorderLayout.SOUTH);
             frame.setVisible(true);
         });
     }
 
     /**
-     * Writes match information to a text file
-     * 
-     * @param matches   List of MatchInfo objects to write
-     * @param eventName The name of the event to prepend to each match
-     * @param filename  The name of the file to write to
-     * @throws IOException if there's an error writing to the file
+     * Runs the batch mode from the UI thread's worker and shows a summary at the end.
      */
-    private static void writeMatchesToFile(List<MatchInfo> matches, String eventName, String filename)
-            throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (MatchInfo match : matches) {
-                writer.write(eventName + " - " + match.toString());
-                writer.newLine();
+    private static void runBatch(JFrame frame, JLabel progressLabel, String token, List<String> slugs,
+            String eventName, AtomicBoolean cancelled, Runnable resetGenerate) {
+        String message;
+        int messageType = JOptionPane.INFORMATION_MESSAGE;
+        try {
+            BatchRunner runner = new BatchRunner(TokenPool.parse(token), Path.of("."));
+            runner.setTemplate(TitleTemplate.fromFileOrDefault(TitleTemplate.DEFAULT_FILE));
+            runner.setIndex(SetIndex.shared());
+            SwingUtilities.invokeLater(() -> progressLabel.setText("Reading the events..."));
+            List<BatchRunner.Job> jobs = runner.expand(slugs, eventName);
+            SwingUtilities.invokeLater(() -> progressLabel.setText("Batch: 0/" + jobs.size() + " events done"));
+
+            List<BatchRunner.Result> results = runner.run(jobs, (result, doneEvents, totalEvents) -> {
+                SwingUtilities.invokeLater(() -> {
+                    progressLabel.setText("Batch: " + doneEvents + "/" + totalEvents + " events done");
+                });
+            });
+
+            StringBuilder summary = new StringBuilder();
+            for (BatchRunner.Result result : results) {
+                if (result.error() == null) {
+                    summary.append(result.output().getFileName()).append(": ").append(result.setCount())
+                            .append(" sets\n");
+                } else {
+                    summary.append(result.job().eventSlug()).append(": Error : ")
+                            .append(result.error().getMessage()).append("\n");
+                    messageType = JOptionPane.WARNING_MESSAGE;
+                }
+            }
+            message = summary.toString();
+        } catch (Exception ex) {
+            message = "Error : " + ex.getMessage();
+            messageType = JOptionPane.ERROR_MESSAGE;
+        }
+
+        String finalMessage = message;
+        int finalMessageType = messageType;
+        SwingUtilities.invokeLater(() -> {
+            resetGenerate.run();
+            if (cancelled.get()) {
+                progressLabel.setText("Batch cancelled, Generate again to go on from where it stopped");
+                return;
             }
+            JOptionPane.showMessageDialog(frame, finalMessage, "Batch", finalMessageType);
+        });
+    }
+
+    /**
+     * Loads the CodeNext font from the jar, or from the resources folder when running from the IDE.
+     *
+     * @return The font at 12pt, or null if it can't be loaded (the default font is used then).
+     */
+    private static Font loadCodeNextFont() {
+        try (InputStream in = App.class.getResourceAsStream("/CodeNext-ExtraBold.ttf")) {
+            Font font = in != null
+                    ? Font.createFont(Font.TRUETYPE_FONT, in)
+                    : Font.createFont(Font.TRUETYPE_FONT, new File(FONT_PATH));
+            return font.deriveFont(Font.PLAIN, 12f);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
         }
     }
 
@@ -258,8 +404,10 @@ public class App {
     private static String loadToken() {
         File file = new File(TOKEN_FILE);
         if (file.exists()) {
+            // One token per line, all of them go in the pool
             try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                return reader.readLine();
+                String tokens = String.join(System.lineSeparator(), reader.lines().toList()).strip();
+                return tokens.isEmpty() ? null : tokens;
             } catch (IOException e) {
                 System.err.println("Error loading token: " + e.getMessage());
             }
@@ -267,9 +415,46 @@ public class App {
         return null;
     }
 
+    /**
+     * Shows the pages fetched in the label, with the speed and the time left once there is a speed.
+     */
+    private static ProgressCallback labelProgress(JLabel progressLabel) {
+        return new ProgressCallback() {
+            @Override
+            public void onProgress(int currentPage, int totalPages, String eventSlug) {
+                onProgress(currentPage, totalPages, eventSlug, 0, null);
+            }
+
+            @Override
+            public void onProgress(int currentPage, int totalPages, String eventSlug, double pagesPerSecond,
+                    Duration eta) {
+                String text = "Fetched page " + currentPage + "/" + totalPages + " of sets for event: " + eventSlug;
+                if (eta != null && currentPage < totalPages) {
+                    text += String.format(Locale.ROOT, " (%.1f pages/s, %d s left)", pagesPerSecond,
+                            eta.toSeconds() + 1);
+                }
+                String label = text;
+                SwingUtilities.invokeLater(() -> progressLabel.setText(label));
+            }
+        };
+    }
+
     // Functional interface for progress callback
+    // currentPage is the number of pages done so far, pages can finish in any order
     @FunctionalInterface
     public interface ProgressCallback {
         void onProgress(int currentPage, int totalPages, String eventSlug);
+
+        /**
+         * Same as the other onProgress with the speed of the fetch, ApiCalls calls this one.
+         * By default it only calls the other one, implement it to show a throughput or an ETA.
+         *
+         * @param pagesPerSecond The pages done per second since page 1 was asked, 0 before it is done.
+         * @param eta The time left at that speed, null when there is no speed yet.
+         */
+        default void onProgress(int currentPage, int totalPages, String eventSlug, double pagesPerSecond,
+                Duration eta) {
+            onProgress(currentPage, totalPages, eventSlug);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.fubukicoeur;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the titles of several events in one run, for example every event of a weekend.
+ * All events run at the same time, the requests all go through the rate limit bucket of the token,
+ * so the run takes the time the rate limit allows instead of the sum of the events.
+ * With a TokenPool of n tokens the batch has n buckets, so it goes about n times faster.
+ */
+public class BatchRunner {
+    private final TokenPool tokens;
+    private final Path outputDir;
+    private OutputFormat format = OutputFormat.TXT;
+    private TitleTemplate template = TitleTemplate.DEFAULT;
+    private SetIndex index;
+    private int perPage;
+    private boolean coalescePages;
+
+    /**
+     * @param apiToken The API token, its rate limit is shared by every event of the batch.
+     * @param outputDir The folder where the files of each event are written.
+     */
+    public BatchRunner(String apiToken, Path outputDir) {
+        this(TokenPool.of(apiToken), outputDir);
+    }
+
+    /**
+     * @param tokens The API tokens, shared by every event of the batch.
+     * @param outputDir The folder where the files of each event are written.
+     */
+    public BatchRunner(TokenPool tokens, Path outputDir) {
+        this.tokens = tokens;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * @param format The format of the file written for each event, TXT by default.
+     */
+    public void setFormat(OutputFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @param template The template of the titles, the default one if not set.
+     */
+    public void setTemplate(TitleTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * @param index Where the sets of each event are added once its file is written, null (the default) for none.
+     */
+    public void setIndex(SetIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @param perPage The page size of every event, 0 (the default) for the biggest one, see ApiCalls.setPerPage.
+     */
+    public void setPerPage(int perPage) {
+        this.perPage = perPage;
+    }
+
+    /**
+     * @param coalescePages true to ask several pages per request, see ApiCalls.setCoalescePages.
+     */
+    public void setCoalescePages(boolean coalescePages) {
+        this.coalescePages = coalescePages;
+    }
+
+    /**
+     * An event to generate.
+     *
+     * @param eventSlug The slug of the event.
+     * @param eventName The event name put at the start of each title.
+     */
+    public record Job(String eventSlug, String eventName) {
+    }
+
+    /**
+     * What happened to one event of the batch.
+     *
+     * @param job The event.
+     * @param output The file written, null if it failed.
+     * @param setCount The number of titles written.
+     * @param error The error, null if it worked.
+     */
+    public record Result(Job job, Path output, int setCount, Exception error) {
+    }
+
+    /**
+     * Called each time an event of the batch is done.
+     */
+    @FunctionalInterface
+    public interface BatchCallback {
+        void onEventDone(Result result, int doneEvents, int totalEvents);
+    }
+
+    /**
+     * @param slug A slug given by the user.
+     * @return true if it is a whole tournament ("tournament/x") and not one of its events.
+     */
+    public static boolean isTournamentSlug(String slug) {
+        String normalized = slug.toLowerCase(Locale.ROOT);
+        return normalized.startsWith("tournament/") && !normalized.contains("/event/");
+    }
+
+    /**
+     * Turns what the user gave into the list of events to generate.
+     * Tournament slugs are replaced by all their events, their titles start with eventName then the event name.
+     * An event given twice (or also part of a tournament given) is only run once.
+     *
+     * @param slugs Event slugs or tournament slugs.
+     * @param eventName The event name given by the user.
+     * @return One job per event.
+     * @throws Exception If a tournament can't be read from the API.
+     */
+    public List<Job> expand(List<String> slugs, String eventName) throws Exception {
+        List<Job> jobs = new ArrayList<>();
+        // Slugs don't care about case on start.gg
+        Set<String> seen = new HashSet<>();
+        for (String slug : slugs) {
+            if (!isTournamentSlug(slug)) {
+                if (seen.add(slug.toLowerCase(Locale.ROOT))) {
+                    jobs.add(new Job(slug, eventName));
+                }
+                continue;
+            }
+            for (ApiCalls.TournamentEvent event : ApiCalls.getTournamentEvents(tokens, slug)) {
+                String name = eventName.isEmpty() ? event.name() : eventName + " " + event.name();
+                if (seen.add(event.slug().toLowerCase(Locale.ROOT))) {
+                    jobs.add(new Job(event.slug(), name));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Runs every job at the same time, one file per event.
+     * A failing event does not stop the others, its error is in its result.
+     * Two events that would get the same file name (see outputFileNames) get different ones.
+     *
+     * @param jobs The events to generate.
+     * @param callback Optional callback called when each event is done.
+     * @return The results, in the same order as the jobs.
+     */
+    public List<Result> run(List<Job> jobs, BatchCallback callback) throws InterruptedException {
+        AtomicInteger doneEvents = new AtomicInteger();
+        List<Future<Result>> futures = new ArrayList<>();
+        List<String> fileNames = outputFileNames(jobs, format);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                Path output = outputDir.resolve(fileNames.get(i));
+                futures.add(executor.submit(() -> {
+                    Result result = runJob(job, output);
+                    if (callback != null) {
+                        synchronized (doneEvents) {
+                            callback.onEventDone(result, doneEvents.incrementAndGet(), jobs.size());
+                        }
+                    }
+                    return result;
+                }));
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // runJob catches everything, this can't really happen
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    // Cancelled: close() would wait for every event, they have to stop now
+                    executor.shutdownNow();
+                    throw e;
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Fetches the streamed sets of every job at the same time, without writing any file.
+     * Added to the index if there is one, like a run.
+     *
+     * @param jobs The events to fetch.
+     * @return The sets of each event, in the same order as the jobs.
+     * @throws Exception The error of the first event that failed.
+     */
+    public List<List<MatchInfo>> fetch(List<Job> jobs) throws Exception {
+        List<Future<List<MatchInfo>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Job job : jobs) {
+                futures.add(executor.submit(() -> {
+                    List<MatchInfo> matches = apiCalls(job).getAllStreamedSetDetails(null);
+                    if (index != null) {
+                        index.addEventQuietly(job.eventSlug(), job.eventName(), matches);
+                    }
+                    return matches;
+                }));
+            }
+
+            List<List<MatchInfo>> events = new ArrayList<>();
+            for (Future<List<MatchInfo>> future : futures) {
+                try {
+                    events.add(future.get());
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    throw e;
+                }
+            }
+            return events;
+        }
+    }
+
+    private Result runJob(Job job, Path output) {
+        try {
+            List<MatchInfo> matches = apiCalls(job).getAllStreamedSetDetails(null);
+            TitleWriter.write(matches, job.eventName(), output, format, template);
+            if (index != null) {
+                index.addEventQuietly(job.eventSlug(), job.eventName(), matches);
+            }
+            return new Result(job, output, matches.size(), null);
+        } catch (Exception e) {
+            return new Result(job, null, 0, e);
+        }
+    }
+
+    private ApiCalls apiCalls(Job job) {
+        ApiCalls api = new ApiCalls(tokens, job.eventSlug());
+        api.setPerPage(perPage);
+        api.setCoalescePages(coalescePages);
+        return api;
+    }
+
+    /**
+     * @return The file name for an event, "tournament/genesis-x/event/ultimate-singles" gives
+     *         "sets-genesis-x-ultimate-singles.txt" in TXT.
+     */
+    public static String outputFileName(String eventSlug, OutputFormat format) {
+        String name = eventSlug.toLowerCase(Locale.ROOT)
+                .replace("tournament/", "")
+                .replace("/event/", "-")
+                .replaceAll("[^a-z0-9-]+", "-")
+                .replaceAll("(^-+|-+$)", "");
+        return "sets-" + name + "." + format.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * outputFileName for each job, without two jobs on the same file: "tournament/a/event/b-c" and
+     * "tournament/a-b/event/c" both give "sets-a-b-c.txt", the second one gets "sets-a-b-c-2.txt".
+     *
+     * @return The file names, in the same order as the jobs.
+     */
+    public static List<String> outputFileNames(List<Job> jobs, OutputFormat format) {
+        String extension = "." + format.name().toLowerCase(Locale.ROOT);
+        Set<String> used = new HashSet<>();
+        List<String> names = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            String name = outputFileName(job.eventSlug(), format);
+            String base = name.substring(0, name.length() - extension.length());
+            for (int suffix = 2; !used.add(name); suffix++) {
+                name = base + "-" + suffix + extension;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,352 @@
+package com.fubukicoeur;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The character names of a game, by start.gg character id.
+ *
+ * Names are in an array indexed by (id - smallest id), so a lookup is one subtraction and one array read.
+ * The ids of a game are close to each other (Ultimate goes from 1271 to 1897), if they are not the
+ * registry falls back to a binary search in the sorted ids.
+ *
+ * Ultimate is built in. Other games (Melee is 1, Rivals of Aether 24, Street Fighter 6 43868...) are asked
+ * to the API the first time one of their events is fetched, then kept in the cache folder.
+ */
+public final class CharacterRegistry {
+    public static final int ULTIMATE_ID = 1386;
+    public static final String UNKNOWN = "Unknown";
+
+    // The character list of a game only changes with a DLC
+    private static final Duration DISK_TTL = Duration.ofDays(30);
+    // Up to this many ids between the smallest and the biggest, the dense table is used (16 KB of references at most).
+    // Ultimate spans 627 ids for less than 90 characters, at that size the wasted slots don't matter
+    private static final int MAX_DENSE_SPAN = 4096;
+    private static final Map<Integer, CharacterRegistry> LOADED = new ConcurrentHashMap<>();
+    private static final CharacterRegistry ULTIMATE = of(ULTIMATE_ID, builtInUltimate());
+
+    private final int videogameId;
+    private final int size;
+    // Dense table
+    private final int minId;
+    private final String[] names;
+    // Sparse table, when the ids are too far apart for the dense one
+    private final String[] sortedNames;
+    // Every id, sorted. Also gives each character a small number (its index), see ordinal
+    private final int[] sortedIds;
+
+    private CharacterRegistry(int videogameId, int minId, String[] names, int[] sortedIds, String[] sortedNames) {
+        this.videogameId = videogameId;
+        this.size = sortedIds.length;
+        this.minId = minId;
+        this.names = names;
+        this.sortedIds = sortedIds;
+        this.sortedNames = sortedNames;
+    }
+
+    /**
+     * Builds a registry.
+     *
+     * @param videogameId The start.gg id of the game.
+     * @param characters The name of each character id.
+     */
+    public static CharacterRegistry of(int videogameId, Map<Integer, String> characters) {
+        int[] ids = characters.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        if (ids.length == 0) {
+            return new CharacterRegistry(videogameId, 0, new String[0], ids, null);
+        }
+        long span = (long) ids[ids.length - 1] - ids[0] + 1;
+        if (span <= MAX_DENSE_SPAN) {
+            String[] names = new String[(int) span];
+            for (int id : ids) {
+                names[id - ids[0]] = characters.get(id);
+            }
+            return new CharacterRegistry(videogameId, ids[0], names, ids, null);
+        }
+        String[] sortedNames = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sortedNames[i] = characters.get(ids[i]);
+        }
+        return new CharacterRegistry(videogameId, 0, null, ids, sortedNames);
+    }
+
+    /**
+     * @return The built in Ultimate characters.
+     */
+    public static CharacterRegistry ultimate() {
+        return ULTIMATE;
+    }
+
+    /**
+     * Gives the registry of a game without asking the API: already loaded, then the cache folder.
+     * Used for the MatchInfo read from the disk, the registry was saved when they were fetched.
+     *
+     * @param videogameId The start.gg id of the game.
+     * @return The registry, the built in one for Ultimate or an empty one (every name is "Unknown")
+     *         if the game was never loaded.
+     */
+    public static CharacterRegistry forVideogame(int videogameId) {
+        CharacterRegistry registry = loadedOrOnDisk(videogameId);
+        if (registry != null) {
+            return registry;
+        }
+        return videogameId == ULTIMATE_ID ? keep(ULTIMATE_ID, ULTIMATE) : of(videogameId, Map.of());
+    }
+
+    /**
+     * Gives the registry of a game, asking the API only if it is not loaded or in the cache folder.
+     *
+     * @param videogameId The start.gg id of the game.
+     * @param loader Asks the API for the characters of the game.
+     * @return The registry of the game.
+     * @throws Exception If the API call fails. Ultimate is built in, it is never asked.
+     */
+    public static CharacterRegistry forVideogame(int videogameId, Loader loader) throws Exception {
+        CharacterRegistry registry = loadedOrOnDisk(videogameId);
+        if (registry != null) {
+            return registry;
+        }
+        if (videogameId == ULTIMATE_ID) {
+            return keep(ULTIMATE_ID, ULTIMATE);
+        }
+        registry = of(videogameId, loader.load(videogameId));
+        registry.save(file(videogameId));
+        return keep(videogameId, registry);
+    }
+
+    public int getVideogameId() {
+        return videogameId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id A character id from start.gg.
+     * @return The name of the character, "Unknown" if the id is not in this game.
+     */
+    public String name(int id) {
+        String name;
+        if (names != null) {
+            int index = id - minId;
+            name = index >= 0 && index < names.length ? names[index] : null;
+        } else {
+            int index = Arrays.binarySearch(sortedIds, id);
+            name = index >= 0 ? sortedNames[index] : null;
+        }
+        return name != null ? name : UNKNOWN;
+    }
+
+    /**
+     * @param name A character name, the case doesn't matter ("steve", "Pikachu").
+     * @return The id of the character, -1 if no character of this game has that name.
+     */
+    public int find(String name) {
+        for (int id : sortedIds) {
+            if (name(id).equalsIgnoreCase(name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Every character id of the game, sorted.
+     */
+    public int[] ids() {
+        return sortedIds.clone();
+    }
+
+    /**
+     * The characters numbered from 0 in id order. Ultimate has less than 100, so an ordinal fits in a byte
+     * where an id needs an int (MatchStore packs them like that).
+     *
+     * @param id A character id from start.gg.
+     * @return The ordinal of the character, -1 if the id is not in this game.
+     */
+    public int ordinal(int id) {
+        int index = Arrays.binarySearch(sortedIds, id);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @param ordinal An ordinal given by ordinal(int).
+     * @return The character id.
+     */
+    public int idAt(int ordinal) {
+        return sortedIds[ordinal];
+    }
+
+    /**
+     * Asks the API for the characters of a game.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Map<Integer, String> load(int videogameId) throws Exception;
+    }
+
+    private static CharacterRegistry loadedOrOnDisk(int videogameId) {
+        CharacterRegistry registry = LOADED.get(videogameId);
+        if (registry != null) {
+            return registry;
+        }
+        registry = read(file(videogameId));
+        return registry != null ? keep(videogameId, registry) : null;
+    }
+
+    // Two events of the same game can load it at the same time, the first one wins so there is one registry per game
+    // (SetStats and MatchStore compare them by identity)
+    private static CharacterRegistry keep(int videogameId, CharacterRegistry registry) {
+        CharacterRegistry kept = LOADED.putIfAbsent(videogameId, registry);
+        return kept != null ? kept : registry;
+    }
+
+    private static Path file(int videogameId) {
+        return ResponseCache.DEFAULT_DIR.resolve("characters-" + videogameId + ".tsv");
+    }
+
+    // One "id<TAB>name" line per character
+    private static CharacterRegistry read(Path file) {
+        try {
+            if (!Files.exists(file)
+                    || Files.getLastModifiedTime(file).toInstant().isBefore(Instant.now().minus(DISK_TTL))) {
+                return null;
+            }
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            int videogameId = Integer.parseInt(lines.get(0).trim());
+            Map<Integer, String> characters = new HashMap<>();
+            for (String line : lines.subList(1, lines.size())) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    characters.put(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+                }
+            }
+            return of(videogameId, characters);
+        } catch (IOException | RuntimeException e) {
+            // Broken file, it will be asked again
+            return null;
+        }
+    }
+
+    private void save(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(Integer.toString(videogameId));
+                writer.newLine();
+                for (int id : ids()) {
+                    writer.write(id + "\t" + name(id));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not save the characters of game " + videogameId + ": " + e.getMessage());
+        }
+    }
+
+    // Ultimate was the only game before the registry, this list works even without the API
+    private static Map<Integer, String> builtInUltimate() {
+        return Map.ofEntries(
+            Map.entry(1271, "Bayonetta"),
+            Map.entry(1272, "Bowser Jr."),
+            Map.entry(1273, "Bowser"),
+            Map.entry(1274, "Captain Falcon"),
+            Map.entry(1275, "Cloud"),
+            Map.entry(1276, "Corrin"),
+            Map.entry(1277, "Daisy"),
+            Map.entry(1278, "Dark Pit"),
+            Map.entry(1279, "Diddy Kong"),
+            Map.entry(1280, "Donkey Kong"),
+            Map.entry(1282, "Dr. Mario"),
+            Map.entry(1283, "Duck Hunt"),
+            Map.entry(1285, "Falco"),
+            Map.entry(1286, "Fox"),
+            Map.entry(1287, "Ganondorf"),
+            Map.entry(1289, "Greninja"),
+            Map.entry(1290, "Ice Climbers"),
+            Map.entry(1291, "Ike"),
+            Map.entry(1292, "Inkling"),
+            Map.entry(1293, "Jigglypuff"),
+            Map.entry(1294, "King Dedede"),
+            Map.entry(1295, "Kirby"),
+            Map.entry(1296, "Link"),
+            Map.entry(1297, "Little Mac"),
+            Map.entry(1298, "Lucario"),
+            Map.entry(1299, "Lucas"),
+            Map.entry(1300, "Lucina"),
+            Map.entry(1301, "Luigi"),
+            Map.entry(1302, "Mario"),
+            Map.entry(1304, "Marth"),
+            Map.entry(1305, "Mega Man"),
+            Map.entry(1307, "Meta Knight"),
+            Map.entry(1310, "Mewtwo"),
+            Map.entry(1311, "Mii Brawler"),
+            Map.entry(1313, "Ness"),
+            Map.entry(1314, "Olimar"),
+            Map.entry(1315, "Pac-Man"),
+            Map.entry(1316, "Palutena"),
+            Map.entry(1317, "Peach"),
+            Map.entry(1318, "Pichu"),
+            Map.entry(1319, "Pikachu"),
+            Map.entry(1320, "Pit"),
+            Map.entry(1321, "Pokemon Trainer"),
+            Map.entry(1322, "Ridley"),
+            Map.entry(1323, "R.O.B."),
+            Map.entry(1324, "Robin"),
+            Map.entry(1325, "Rosalina"),
+            Map.entry(1326, "Roy"),
+            Map.entry(1327, "Ryu"),
+            Map.entry(1328, "Samus"),
+            Map.entry(1329, "Sheik"),
+            Map.entry(1330, "Shulk"),
+            Map.entry(1331, "Snake"),
+            Map.entry(1332, "Sonic"),
+            Map.entry(1333, "Toon Link"),
+            Map.entry(1334, "Villager"),
+            Map.entry(1335, "Wario"),
+            Map.entry(1336, "Wii Fit Trainer"),
+            Map.entry(1337, "Wolf"),
+            Map.entry(1338, "Yoshi"),
+            Map.entry(1339, "Young Link"),
+            Map.entry(1340, "Zelda"),
+            Map.entry(1341, "Zero Suit Samus"),
+            Map.entry(1405, "Mr. Game & Watch"),
+            Map.entry(1406, "Incineroar"),
+            Map.entry(1407, "King K. Rool"),
+            Map.entry(1408, "Dark Samus"),
+            Map.entry(1409, "Chrom"),
+            Map.entry(1410, "Ken"),
+            Map.entry(1411, "Simon"),
+            Map.entry(1412, "Richter"),
+            Map.entry(1413, "Isabelle"),
+            Map.entry(1414, "Mii Swordfighter"),
+            Map.entry(1415, "Mii Gunner"),
+            Map.entry(1441, "Piranha Plant"),
+            Map.entry(1453, "Joker"),
+            Map.entry(1526, "Hero"),
+            Map.entry(1530, "Banjo Kazooie"),
+            Map.entry(1532, "Terry"),
+            Map.entry(1539, "Byleth"),
+            Map.entry(1746, "Random"),
+            Map.entry(1747, "Min Min"),
+            Map.entry(1766, "Steve"),
+            Map.entry(1777, "Sephiroth"),
+            Map.entry(1795, "Aegis"),
+            Map.entry(1846, "Kazuya"),
+            Map.entry(1897, "Sora"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.fubukicoeur;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The character selections of one set, to get the characters of each entrant in the order they were picked.
+ * It can be cleared and reused for the next set.
+ */
+final class CharacterSelections {
+    private static final int[] NONE = new int[0];
+
+    private final List<String> entrantKeys = new ArrayList<>();
+    private int[] characterIds = new int[16];
+
+    void add(String entrantKey, int characterId) {
+        if (entrantKeys.size() == characterIds.length) {
+            characterIds = Arrays.copyOf(characterIds, characterIds.length * 2);
+        }
+        characterIds[entrantKeys.size()] = characterId;
+        entrantKeys.add(entrantKey);
+    }
+
+    /**
+     * @return The different characters of the entrant, in the order they were first picked.
+     */
+    int[] of(String entrantKey) {
+        int[] result = null;
+        int count = 0;
+        for (int i = 0; i < entrantKeys.size(); i++) {
+            if (!entrantKeys.get(i).equals(entrantKey) || contains(result, count, characterIds[i])) {
+                continue;
+            }
+            if (result == null) {
+                result = new int[4];
+            } else if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = characterIds[i];
+        }
+        if (result == null) {
+            return NONE;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    void clear() {
+        entrantKeys.clear();
+    }
+
+    private static boolean contains(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
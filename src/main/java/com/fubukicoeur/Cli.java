@@ -0,0 +1,598 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command line mode, for cron or CI machines without a display.
+ * Nothing here loads AWT or Swing, run it with "java -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli"
+ * (or give any argument to App, it calls this class before touching the window).
+ */
+public final class Cli {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ERROR = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_API_ERROR = 3;
+    public static final int EXIT_IO_ERROR = 4;
+    public static final int EXIT_PARTIAL_BATCH = 5;
+    public static final int EXIT_NETWORK_ERROR = 6;
+
+    private static final String TOKEN_FILE = "token.txt";
+    private static final String TOKEN_ENV = "STARTGG_TOKEN";
+
+    private static final String USAGE = """
+            Usage: java -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli --slug <slug> --event <name> [options]
+                   java -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli --search [--player <tag>] [--chars <a>[,<b>]] [--in <text>]
+                   java -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli --stats [--slug <slugs>] [--in <text>] [-f json] [-o <path>]
+                   java -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli --serve [port] [--ttl <seconds>]
+              -s, --slug <slug>        Event slug, several separated by commas, or a tournament slug
+              -e, --event <name>       Event name put at the start of each title
+                  --token <token>      API token, several separated by commas to go past the rate limit of one
+                  --token-file <file>  File with the API tokens, one per line (default token.txt, STARTGG_TOKEN
+                                       is also read)
+              -o, --output <path>      Output file (default sets.txt), output folder in batch mode (default .)
+              -f, --format <format>    txt, csv or json (default txt)
+              -t, --template <text>    Title template (default template.txt or
+                                       "{event} - {phase} {round} - {p1} ({p1chars}) VS {p2} ({p2chars})"),
+                                       placeholders: {event} {phase} {round} {p1} {p2} {p1chars} {p2chars}
+                  --max-length <n>     Max title length, 0 for no limit (default 100, the YouTube limit)
+                  --watch [seconds]    Keep polling the event and append the new sets (default every 30 s)
+                  --per-page <n>       Sets asked per page (default the most the API allows), smaller pages
+                                       come back sooner
+                  --coalesce           Ask several pages in one request, useful with a small --per-page
+                  --thumbnails <dir>   Also render a PNG thumbnail of each set in this folder (one event only)
+                  --assets <dir>       With --thumbnails, the character images, "<id>.png" or "<name>.png"
+                                       like "pyra_mythra.png", and an optional background.png (default assets)
+              -q, --quiet              Only print errors and the timings
+                  --metrics            Print the request, parse and write counters at the end (see FetchMetrics)
+                  --search             Search the sets of the events fetched before (cache/index), no request
+                  --player <tag>       With --search, sets of this player, "tag*" for every tag starting with it
+                  --chars <a>[,<b>]    With --search, sets with this character, or a vs b (names or ids)
+                  --in <text>          With --search or --stats, only the events whose slug or name contains this
+                  --stats              Character pick rates, head-to-heads and sets per phase, in CSV (or JSON with
+                                       -f json) on the output or -o, of the --slug events (fetched, or read from
+                                       the cache), or without --slug of every event in cache/index
+                  --serve [port]       Serve the titles on http://localhost:<port>/titles?slug=...&event=...
+                                       (default port 8080), with format, template and maxLength parameters.
+                                       The clients asking the same event share one fetch
+                  --ttl <seconds>      With --serve, how long the sets of an event are kept (default 300)
+              -h, --help               Show this help
+            Exit codes: 0 ok, 1 unexpected error, 2 bad arguments, 3 API error, 4 file error,
+                        5 some events of a batch failed, 6 network error
+            """;
+
+    private Cli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the command line mode.
+     *
+     * @param args The command line arguments.
+     * @return The exit code.
+     */
+    public static int run(String[] args) {
+        long mainStart = System.nanoTime();
+        PrintStream err = System.err;
+
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("Error : " + e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (options.help) {
+            System.out.print(USAGE);
+            return EXIT_OK;
+        }
+        // The real output, --stats writes on it while the progress of ApiCalls is hidden
+        PrintStream out = System.out;
+        if (options.quiet || (options.stats && options.output == null)) {
+            // ApiCalls prints its progress on System.out
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        ProcessHandle.current().info().startInstant().ifPresent(jvmStart ->
+                err.println("Startup: " + Duration.between(jvmStart, Instant.now()).toMillis() + " ms (JVM start to main)"));
+
+        if (options.search) {
+            return runSearch(options, mainStart);
+        }
+
+        try {
+            int exitCode;
+            if (options.stats) {
+                exitCode = runStats(options, out, mainStart);
+                err.println("Total: " + millisSince(mainStart) + " ms");
+                return exitCode;
+            }
+            TokenPool tokens = options.resolveTokens();
+            if (options.servePort >= 0) {
+                return runServe(options, tokens);
+            }
+            if (options.slugs.size() > 1 || BatchRunner.isTournamentSlug(options.slugs.get(0))) {
+                exitCode = runBatch(options, tokens, mainStart);
+            } else if (options.watchSeconds > 0) {
+                exitCode = runWatch(options, tokens, mainStart);
+            } else {
+                exitCode = runSingle(options, tokens, mainStart);
+            }
+            err.println("Total: " + millisSince(mainStart) + " ms");
+            return exitCode;
+        } catch (IllegalArgumentException e) {
+            err.println("Error : " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (ApiException e) {
+            err.println("API error : " + e.getMessage());
+            return EXIT_API_ERROR;
+        } catch (UnknownHostException | SocketException | HttpTimeoutException e) {
+            err.println("Network error : " + e);
+            return EXIT_NETWORK_ERROR;
+        } catch (IOException e) {
+            err.println("File error : " + e.getMessage());
+            return EXIT_IO_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Interrupted");
+            return EXIT_ERROR;
+        } catch (Exception e) {
+            err.println("Error : " + e);
+            return EXIT_ERROR;
+        } finally {
+            // Also after an error, a failed run is the one we want to look at
+            if (options.metrics) {
+                err.println(FetchMetrics.get().summary());
+            }
+        }
+    }
+
+    /**
+     * Serves the titles until the process is stopped.
+     */
+    private static int runServe(Options options, TokenPool tokens) throws Exception {
+        TitleServer server = new TitleServer(tokens, options.servePort);
+        server.setTtl(Duration.ofSeconds(options.ttlSeconds));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.err.println("Serving the titles on " + server.getUrl() + "?slug=...&event=...");
+        new CountDownLatch(1).await();
+        return EXIT_OK;
+    }
+
+    private static int runSingle(Options options, TokenPool tokens, long mainStart) throws Exception {
+        String eventSlug = options.slugs.get(0);
+        ApiCalls api = new ApiCalls(tokens, eventSlug);
+        api.setPerPage(options.perPage);
+        api.setCoalescePages(options.coalesce);
+        Path output = options.output != null ? options.output : Path.of("sets.txt");
+        TitleTemplate template = options.resolveTemplate();
+
+        // Indexed and rendered page by page, the sets of the whole event are never kept for them
+        try (SetIndex.EventWriter indexed = startIndex(eventSlug, options.eventName);
+                ThumbnailRenderer.Run thumbnails = startThumbnails(options)) {
+            // JSON is one document, it's still written once everything is fetched
+            if (options.format == OutputFormat.JSON) {
+                List<MatchInfo> matches = api.getAllStreamedSetDetails(null);
+                TitleWriter.write(matches, options.eventName, output, options.format, template);
+                if (!matches.isEmpty()) {
+                    System.err.println("First title: " + millisSince(mainStart) + " ms");
+                }
+                System.out.println(matches.size() + " titles written to " + output);
+                addPage(indexed, thumbnails, matches);
+            } else {
+                SetsPipeline pipeline = new SetsPipeline(api, options.eventName, output);
+                pipeline.setFormat(options.format);
+                pipeline.setTemplate(template);
+                boolean[] firstTitle = { false };
+                pipeline.setPageWrittenListener((_, _, pageMatches, titlesWritten) -> {
+                    addPage(indexed, thumbnails, pageMatches);
+                    if (titlesWritten > 0 && !firstTitle[0]) {
+                        firstTitle[0] = true;
+                        System.err.println("First title: " + millisSince(mainStart) + " ms");
+                    }
+                });
+                int written = pipeline.run(null);
+                System.out.println(written + " titles written to " + output);
+            }
+
+            if (indexed != null) {
+                indexed.commit();
+            }
+            if (thumbnails != null) {
+                List<Path> files = thumbnails.finish();
+                System.err.println("Last thumbnail: " + millisSince(mainStart) + " ms");
+                System.out.println(files.size() + " thumbnails written to " + options.thumbnailDir);
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private static void addPage(SetIndex.EventWriter indexed, ThumbnailRenderer.Run thumbnails,
+            List<MatchInfo> matches) {
+        if (indexed != null) {
+            indexed.add(matches);
+        }
+        if (thumbnails != null) {
+            thumbnails.add(matches);
+        }
+    }
+
+    /**
+     * @return Where the sets of the event are indexed, null without an index.
+     */
+    private static SetIndex.EventWriter startIndex(String eventSlug, String eventName) {
+        SetIndex index = SetIndex.shared();
+        return index != null ? index.writeEventQuietly(eventSlug, eventName) : null;
+    }
+
+    /**
+     * @return The thumbnails of the run, null without --thumbnails.
+     */
+    private static ThumbnailRenderer.Run startThumbnails(Options options) throws IOException {
+        if (options.thumbnailDir == null) {
+            return null;
+        }
+        // Nothing is shown, and no dock icon or display is needed for it
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        return new ThumbnailRenderer(options.assetDir).start(options.eventName, options.thumbnailDir);
+    }
+
+    private static int runSearch(Options options, long mainStart) {
+        SetIndex index = SetIndex.shared();
+        if (index == null) {
+            return EXIT_IO_ERROR;
+        }
+        SetIndex.Query query = new SetIndex.Query();
+        try {
+            if (options.player != null) {
+                query.setPlayer(options.player);
+            }
+            if (options.characters != null) {
+                query.setCharacters(options.resolveCharacters());
+            }
+            if (options.searchEvent != null) {
+                query.setEvent(options.searchEvent);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error : " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        long searchStart = System.nanoTime();
+        List<SetIndex.Hit> hits;
+        try {
+            hits = index.search(query);
+        } catch (IOException e) {
+            System.err.println("File error : " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+        long searchMillis = millisSince(searchStart);
+        for (SetIndex.Hit hit : hits) {
+            System.out.println(hit.eventSlug() + "\t" + TitleTemplate.DEFAULT.format(hit.eventName(), hit.match()));
+        }
+        System.err.println(hits.size() + " sets in " + index.getEventCount() + " events (" + index.getSetCount()
+                + " sets) in " + searchMillis + " ms");
+        System.err.println("Total: " + millisSince(mainStart) + " ms");
+        return EXIT_OK;
+    }
+
+    private static int runStats(Options options, PrintStream out, long mainStart) throws Exception {
+        // A season can be a lot of sets, they are kept as rows of a few arrays instead of one MatchInfo each
+        MatchStore matches = new MatchStore();
+        if (options.slugs.isEmpty()) {
+            SetIndex index = SetIndex.shared();
+            if (index == null) {
+                return EXIT_IO_ERROR;
+            }
+            SetIndex.Query query = new SetIndex.Query();
+            if (options.searchEvent != null) {
+                query.setEvent(options.searchEvent);
+            }
+            for (SetIndex.Hit hit : index.search(query)) {
+                matches.add(hit.match());
+            }
+        } else {
+            // Every event at the same time, like a batch, the cached pages don't cost a request
+            BatchRunner runner = new BatchRunner(options.resolveTokens(), null);
+            runner.setPerPage(options.perPage);
+            runner.setCoalescePages(options.coalesce);
+            List<BatchRunner.Job> jobs = runner.expand(options.slugs, "");
+            for (List<MatchInfo> event : runner.fetch(jobs)) {
+                matches.addAll(event);
+            }
+        }
+        System.err.println("Sets read: " + millisSince(mainStart) + " ms");
+
+        long statsStart = System.nanoTime();
+        SetStats stats = SetStats.compute(matches);
+        System.err.println("Stats of " + matches.size() + " sets: " + millisSince(statsStart) + " ms");
+
+        OutputFormat format = options.format == OutputFormat.JSON ? OutputFormat.JSON : OutputFormat.CSV;
+        if (options.output != null) {
+            stats.write(options.output, format);
+            System.err.println("Stats written to " + options.output);
+        } else {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            stats.write(writer, format);
+            writer.flush();
+        }
+        return EXIT_OK;
+    }
+
+    private static int runBatch(Options options, TokenPool tokens, long mainStart) throws Exception {
+        Path outputDir = options.output != null ? options.output : Path.of(".");
+        Files.createDirectories(outputDir);
+        BatchRunner runner = new BatchRunner(tokens, outputDir);
+        runner.setFormat(options.format);
+        runner.setTemplate(options.resolveTemplate());
+        runner.setIndex(SetIndex.shared());
+        runner.setPerPage(options.perPage);
+        runner.setCoalescePages(options.coalesce);
+
+        List<BatchRunner.Job> jobs = runner.expand(options.slugs, options.eventName);
+        boolean[] firstTitle = { false };
+        List<BatchRunner.Result> results = runner.run(jobs, (result, doneEvents, totalEvents) -> {
+            if (result.error() == null && result.setCount() > 0 && !firstTitle[0]) {
+                firstTitle[0] = true;
+                System.err.println("First title: " + millisSince(mainStart) + " ms");
+            }
+            System.out.println(doneEvents + "/" + totalEvents + " " + result.job().eventSlug() + ": "
+                    + (result.error() == null ? result.setCount() + " titles" : "Error : " + result.error().getMessage()));
+        });
+
+        long failed = results.stream().filter(r -> r.error() != null).count();
+        if (failed == 0) {
+            return EXIT_OK;
+        }
+        return failed == results.size() ? EXIT_API_ERROR : EXIT_PARTIAL_BATCH;
+    }
+
+    private static int runWatch(Options options, TokenPool tokens, long mainStart) throws Exception {
+        Path output = options.output != null ? options.output : Path.of("sets.txt");
+        SetWatcher watcher = new SetWatcher(new ApiCalls(tokens, options.slugs.get(0)), options.eventName, output);
+        watcher.setTemplate(options.resolveTemplate());
+        boolean first = true;
+        while (true) {
+            try {
+                int written = watcher.poll(null);
+                if (first && written > 0) {
+                    System.err.println("First title: " + millisSince(mainStart) + " ms");
+                }
+                first = false;
+                System.out.println("Watching: " + watcher.getWatchedSetCount() + " sets in " + output
+                        + " (+" + written + " last poll)");
+            } catch (IOException e) {
+                // ApiException too: API errors, refused connections, resets and timeouts
+                if (first) {
+                    throw e;
+                }
+                // The event was found once, we keep watching (venue Wi-Fi...)
+                System.err.println("Poll failed : " + (e.getMessage() != null ? e.getMessage() : e));
+            }
+            Thread.sleep(Duration.ofSeconds(options.watchSeconds));
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * The parsed command line.
+     */
+    private static final class Options {
+        private final List<String> slugs = new ArrayList<>();
+        private String eventName;
+        private String token;
+        private Path tokenFile;
+        private Path output;
+        private OutputFormat format = OutputFormat.TXT;
+        private String template;
+        private int maxLength = TitleTemplate.YOUTUBE_MAX_LENGTH;
+        private long watchSeconds;
+        // 0 for the default of ApiCalls
+        private int perPage;
+        private boolean coalesce;
+        private boolean quiet;
+        private boolean metrics;
+        private boolean help;
+        private boolean search;
+        private boolean stats;
+        private String player;
+        private String characters;
+        private String searchEvent;
+        // -1 when not serving
+        private int servePort = -1;
+        // Literals, not the constants of TitleServer and ThumbnailRenderer: reading those would initialize
+        // the classes (and AWT for the renderer) on every run
+        private long ttlSeconds = 300;
+        private Path thumbnailDir;
+        private Path assetDir = Path.of("assets");
+
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-s", "--slug" -> {
+                        for (String slug : value(args, ++i, arg).split(",")) {
+                            if (!slug.isBlank()) {
+                                options.slugs.add(slug.trim());
+                            }
+                        }
+                    }
+                    case "-e", "--event" -> options.eventName = value(args, ++i, arg).trim();
+                    case "--token" -> options.token = value(args, ++i, arg).trim();
+                    case "--token-file" -> options.tokenFile = Path.of(value(args, ++i, arg));
+                    case "-o", "--output" -> options.output = Path.of(value(args, ++i, arg));
+                    case "-f", "--format" -> {
+                        String format = value(args, ++i, arg);
+                        try {
+                            options.format = OutputFormat.parse(format);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown format: " + format);
+                        }
+                    }
+                    case "-t", "--template" -> options.template = value(args, ++i, arg);
+                    case "--max-length" -> {
+                        String maxLength = value(args, ++i, arg);
+                        if (!maxLength.matches("\\d+")) {
+                            throw new IllegalArgumentException("--max-length needs a number: " + maxLength);
+                        }
+                        options.maxLength = Integer.parseInt(maxLength);
+                    }
+                    case "--watch" -> {
+                        options.watchSeconds = 30;
+                        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                            options.watchSeconds = Math.max(5, Long.parseLong(args[++i]));
+                        }
+                    }
+                    case "--per-page" -> {
+                        String perPage = value(args, ++i, arg);
+                        if (!perPage.matches("\\d{1,3}") || Integer.parseInt(perPage) < SetsQuery.MIN_PER_PAGE
+                                || Integer.parseInt(perPage) > SetsQuery.MAX_PER_PAGE) {
+                            throw new IllegalArgumentException("--per-page needs a number between "
+                                    + SetsQuery.MIN_PER_PAGE + " and " + SetsQuery.MAX_PER_PAGE + ": " + perPage);
+                        }
+                        options.perPage = Integer.parseInt(perPage);
+                    }
+                    case "--coalesce" -> options.coalesce = true;
+                    case "-q", "--quiet" -> options.quiet = true;
+                    case "--metrics" -> options.metrics = true;
+                    case "-h", "--help" -> options.help = true;
+                    case "--search" -> options.search = true;
+                    case "--stats" -> options.stats = true;
+                    case "--player" -> options.player = value(args, ++i, arg);
+                    case "--chars" -> options.characters = value(args, ++i, arg);
+                    case "--in" -> options.searchEvent = value(args, ++i, arg);
+                    case "--thumbnails" -> options.thumbnailDir = Path.of(value(args, ++i, arg));
+                    case "--assets" -> options.assetDir = Path.of(value(args, ++i, arg));
+                    case "--serve" -> {
+                        options.servePort = TitleServer.DEFAULT_PORT;
+                        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                            options.servePort = Integer.parseInt(args[++i]);
+                        }
+                    }
+                    case "--ttl" -> {
+                        String ttl = value(args, ++i, arg);
+                        if (!ttl.matches("\\d+")) {
+                            throw new IllegalArgumentException("--ttl needs a number of seconds: " + ttl);
+                        }
+                        options.ttlSeconds = Long.parseLong(ttl);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            }
+            if (options.help) {
+                return options;
+            }
+            if (options.search) {
+                if (options.player == null && options.characters == null && options.searchEvent == null) {
+                    throw new IllegalArgumentException("--search needs --player, --chars or --in");
+                }
+                return options;
+            }
+            if (options.stats || options.servePort >= 0) {
+                return options;
+            }
+            if (options.slugs.isEmpty()) {
+                throw new IllegalArgumentException("--slug is required");
+            }
+            if (options.eventName == null || options.eventName.isEmpty()) {
+                throw new IllegalArgumentException("--event is required");
+            }
+            if (options.watchSeconds > 0 && options.slugs.size() > 1) {
+                throw new IllegalArgumentException("--watch only works with one event");
+            }
+            if (options.thumbnailDir != null
+                    && (options.slugs.size() > 1 || options.watchSeconds > 0
+                            || BatchRunner.isTournamentSlug(options.slugs.get(0)))) {
+                throw new IllegalArgumentException("--thumbnails only works with one event");
+            }
+            if (options.thumbnailDir != null && !Files.isDirectory(options.assetDir)) {
+                throw new IllegalArgumentException("The asset folder doesn't exist: " + options.assetDir);
+            }
+            // Checks the template now, a typo should be a usage error before any request
+            if (options.template != null) {
+                TitleTemplate.compile(options.template, options.maxLength);
+            }
+            return options;
+        }
+
+        /**
+         * --chars, each one a name of CharacterRegistry.ultimate() (any case) or an id.
+         */
+        private int[] resolveCharacters() {
+            String[] names = characters.split(",");
+            int[] ids = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim();
+                ids[i] = name.matches("\\d+") ? Integer.parseInt(name) : CharacterRegistry.ultimate().find(name);
+                if (ids[i] < 0) {
+                    throw new IllegalArgumentException("Unknown character: " + name);
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * --template, then template.txt, then the default template.
+         */
+        private TitleTemplate resolveTemplate() throws IOException {
+            if (template != null) {
+                return TitleTemplate.compile(template, maxLength);
+            }
+            return TitleTemplate.fromFileOrDefault(TitleTemplate.DEFAULT_FILE).withMaxLength(maxLength);
+        }
+
+        private static String value(String[] args, int i, String name) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(name + " needs a value");
+            }
+            return args[i];
+        }
+
+        /**
+         * --token, then --token-file, then the STARTGG_TOKEN variable, then token.txt like the window.
+         * Each of them can have several tokens (commas, or one per line in the files).
+         */
+        private TokenPool resolveTokens() throws IOException {
+            if (token != null && !token.isEmpty()) {
+                return TokenPool.parse(token);
+            }
+            if (tokenFile != null) {
+                return TokenPool.read(tokenFile);
+            }
+            String env = System.getenv(TOKEN_ENV);
+            if (env != null && !env.isBlank()) {
+                return TokenPool.parse(env);
+            }
+            Path defaultFile = Path.of(TOKEN_FILE);
+            if (Files.exists(defaultFile)) {
+                return TokenPool.read(defaultFile);
+            }
+            throw new IllegalArgumentException("No API token, use --token, --token-file or " + TOKEN_ENV);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fubukicoeur;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * What we know about the phases of an event, it is needed to build the title prefix
+ * ("Pools" or "Top X") of every set so it is read once and given to every page.
+ *
+ * @param phaseIdToEntrants Number of seeds of each phase, by phase id.
+ * @param firstPhaseId The id of the first phase, sets from this phase are "Pools".
+ * @param multiplePhases true if the event has more than one phase.
+ * @param characters The characters of the game of the event, asked with the phases.
+ */
+public record EventPhases(Map<String, Integer> phaseIdToEntrants, String firstPhaseId, boolean multiplePhases,
+        CharacterRegistry characters) {
+
+    /**
+     * One phase as given by the API.
+     */
+    public record Phase(String id, String name, int numSeeds) {
+    }
+
+    /**
+     * @param phases The phases of the event, in the order given by the API.
+     * @return The phase info of the event, with the Ultimate characters.
+     */
+    public static EventPhases of(List<Phase> phases) {
+        Map<String, Integer> phaseIdToEntrants = new HashMap<>();
+        for (Phase phase : phases) {
+            phaseIdToEntrants.put(phase.id(), phase.numSeeds());
+        }
+        String firstPhaseId = phases.isEmpty() ? null : phases.get(0).id();
+        return new EventPhases(phaseIdToEntrants, firstPhaseId, phases.size() > 1, CharacterRegistry.ultimate());
+    }
+
+    /**
+     * @return The same phases for an event of another game.
+     */
+    public EventPhases withCharacters(CharacterRegistry characters) {
+        return new EventPhases(phaseIdToEntrants, firstPhaseId, multiplePhases, characters);
+    }
+
+    /**
+     * @param phasesNode The "phases" array of the event.
+     * @return The phase info of the event, empty if the node is not an array.
+     */
+    public static EventPhases fromNode(JsonNode phasesNode) {
+        List<Phase> phases = new ArrayList<>();
+        if (phasesNode.isArray()) {
+            for (JsonNode phaseNode : phasesNode) {
+                phases.add(new Phase(phaseNode.path("id").asText(), phaseNode.path("name").asText(),
+                        phaseNode.path("numSeeds").asInt(0)));
+            }
+        }
+        return of(phases);
+    }
+
+    public int entrants(String phaseId) {
+        return phaseIdToEntrants.getOrDefault(phaseId, 0);
+    }
+
+    public boolean isFirstPhase(String phaseId) {
+        return phaseId.equals(firstPhaseId);
+    }
+}
@@ -0,0 +1,253 @@
+package com.fubukicoeur;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The pages already fetched by a run that didn't finish, so the next run of the same event starts
+ * from the first missing page instead of page 1.
+ *
+ * Each event of each API has its own folder in "cache/checkpoints" with the page size of the run and one
+ * file per page. Only one run at a time can use it, see lock.
+ * Unlike the cache nothing expires while the run goes on (sets that change during a long run are
+ * the watch mode's job), the folder is deleted once every page is there. A checkpoint older than
+ * the max age is not resumed, the event probably changed a lot since.
+ */
+public class FetchCheckpoint {
+    public static final Path DEFAULT_DIR = ResponseCache.DEFAULT_DIR.resolve("checkpoints");
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(12);
+
+    // "SVK3", the checkpoints of the older formats (no set count, set states instead of the event state)
+    // are not resumed
+    private static final int MAGIC = 0x53564b33;
+    private static final String INFO_FILE = "checkpoint";
+    private static final String PAGE_PREFIX = "page-";
+    private static final String LOCK_EXTENSION = ".lock";
+
+    private final Path dir;
+    // Next to the folder and not in it, clear deletes the folder
+    private final Path lockFile;
+    private final String key;
+    private final String eventSlug;
+    private final Duration maxAge;
+    private int perPage = -1;
+    private FileChannel lockChannel;
+
+    /**
+     * @param rootDir The folder with the checkpoints of every event.
+     * @param apiUrl The GraphQL endpoint, the same slug on a mock server is another event.
+     * @param eventSlug The event.
+     * @param maxAge How old a checkpoint can be to be resumed.
+     */
+    public FetchCheckpoint(Path rootDir, String apiUrl, String eventSlug, Duration maxAge) {
+        this.eventSlug = eventSlug.toLowerCase(Locale.ROOT);
+        this.key = apiUrl + "\n" + this.eventSlug;
+        String name = ResponseCache.sha256(key).substring(0, 32);
+        this.dir = rootDir.resolve(name);
+        this.lockFile = rootDir.resolve(name + LOCK_EXTENSION);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Takes the checkpoint for this run. Two runs of the same event at the same time (the GUI and
+     * the CLI, a batch and the title server) would save their pages over each other and delete them
+     * while the other one still needs them.
+     *
+     * @return true if this run has the checkpoint, false if another run (in this process or not) has it,
+     *         this run then goes without one.
+     */
+    public boolean lock() {
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.tryLock() != null) {
+                lockChannel = channel;
+                return true;
+            }
+            System.out.println("Another run is fetching " + eventSlug + ", this one doesn't keep a checkpoint");
+        } catch (OverlappingFileLockException e) {
+            // Same thing, but the other run is in this process
+            System.out.println("Another run is fetching " + eventSlug + ", this one doesn't keep a checkpoint");
+        } catch (IOException e) {
+            System.err.println("Checkpoint disabled for " + eventSlug + ": " + e.getMessage());
+        }
+        closeQuietly(channel);
+        return false;
+    }
+
+    /**
+     * Lets the next run have the checkpoint, the pages saved so far stay there.
+     */
+    public void unlock() {
+        if (lockChannel == null) {
+            return;
+        }
+        try {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Could not unlock the checkpoint of " + eventSlug + ": " + e.getMessage());
+        }
+        lockChannel = null;
+    }
+
+    /**
+     * Reads the checkpoint left by a previous run, if there is one for this event.
+     *
+     * @return The page size of that run (the pages only match with the same page size), or -1 if
+     *         there is nothing to resume.
+     */
+    public int resume() {
+        Path info = dir.resolve(INFO_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(info)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                clear();
+                return -1;
+            }
+            int savedPerPage = in.readInt();
+            long startedAt = in.readLong();
+            if (System.currentTimeMillis() - startedAt > maxAge.toMillis()) {
+                clear();
+                return -1;
+            }
+            perPage = savedPerPage;
+            return perPage;
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            // Broken file, starting over is the safe choice
+            clear();
+            return -1;
+        }
+    }
+
+    /**
+     * Starts a checkpoint with this page size, the pages of a checkpoint with another size are deleted.
+     */
+    public void start(int perPage) {
+        if (perPage == this.perPage) {
+            return;
+        }
+        clear();
+        try {
+            Files.createDirectories(dir);
+            writeAtomically(dir.resolve(INFO_FILE), out -> {
+                out.writeUTF(key);
+                out.writeInt(perPage);
+                out.writeLong(System.currentTimeMillis());
+            });
+            this.perPage = perPage;
+        } catch (IOException e) {
+            System.err.println("Checkpoint disabled for " + eventSlug + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The page saved by a previous run, or null if it is not there.
+     */
+    public SetsPage page(int page) {
+        if (perPage < 0) {
+            return null;
+        }
+        Path file = dir.resolve(PAGE_PREFIX + page);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != page) {
+                return null;
+            }
+            int totalPages = in.readInt();
+            boolean eventCompleted = in.readBoolean();
+            int setCount = in.readInt();
+            List<MatchInfo> matches = MatchInfoCodec.readList(in);
+            return new SetsPage(totalPages, null, matches, eventCompleted, setCount);
+        } catch (IOException e) {
+            // Missing or half written, it is fetched again
+            return null;
+        }
+    }
+
+    /**
+     * Saves a page, a failure only means the page will be fetched again next time.
+     */
+    public void save(int page, SetsPage setsPage) {
+        if (perPage < 0) {
+            return;
+        }
+        try {
+            writeAtomically(dir.resolve(PAGE_PREFIX + page), out -> {
+                out.writeInt(page);
+                out.writeInt(setsPage.totalPages());
+                out.writeBoolean(setsPage.eventCompleted());
+                out.writeInt(setsPage.setCount());
+                MatchInfoCodec.writeList(out, setsPage.matches());
+            });
+        } catch (IOException e) {
+            System.err.println("Could not save page " + page + " of " + eventSlug + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the checkpoint, called when the run got every page.
+     */
+    public void clear() {
+        perPage = -1;
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(files::add);
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            System.err.println("Could not delete the checkpoint of " + eventSlug + ": " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing was locked with it
+        }
+    }
+
+    private static void writeAtomically(Path file, Writer writer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            writer.write(out);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,122 @@
+package com.fubukicoeur;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR events of a run, to see in a flight recording where a slow run spent its time:
+ * java -XX:StartFlightRecording=filename=run.jfr -cp SmashVodTitleGenerator.jar com.fubukicoeur.Cli ...
+ * then open run.jfr in JDK Mission Control, or "jfr print --categories 'Smash VOD Titles' run.jfr".
+ *
+ * When no recording is running an event costs almost nothing, commit does nothing.
+ * The same numbers are added up in FetchMetrics (JMX).
+ */
+public final class FetchEvents {
+    private static final String CATEGORY = "Smash VOD Titles";
+
+    private FetchEvents() {
+    }
+
+    /**
+     * One HTTP request to the API, from sending it to the end of its body (read while it is parsed).
+     */
+    @Name("com.fubukicoeur.ApiRequest")
+    @Label("API Request")
+    @Category({ CATEGORY, "API" })
+    @StackTrace(false)
+    public static final class ApiRequest extends Event {
+        @Label("Attempt")
+        @Description("1 for the first try, more for the retries")
+        public int attempt;
+
+        @Label("Status")
+        @Description("HTTP status, 0 if there was no response")
+        public int status;
+
+        @Label("Response Bytes")
+        @Description("Bytes of the body once decompressed")
+        @DataAmount
+        public long responseBytes;
+    }
+
+    /**
+     * A request waiting for the rate limit bucket of its token.
+     */
+    @Name("com.fubukicoeur.RateLimitWait")
+    @Label("Rate Limit Wait")
+    @Category({ CATEGORY, "API" })
+    @StackTrace(false)
+    public static final class RateLimitWait extends Event {
+    }
+
+    /**
+     * The wait before a failed request is sent again.
+     */
+    @Name("com.fubukicoeur.Retry")
+    @Label("Retry")
+    @Category({ CATEGORY, "API" })
+    @StackTrace(false)
+    public static final class Retry extends Event {
+        @Label("Failed Attempt")
+        public int attempt;
+
+        @Label("Reason")
+        public String reason;
+
+        @Label("Rate Limited")
+        @Description("Every request of the token waits, not only this one")
+        public boolean rateLimited;
+
+        @Label("Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        public long delay;
+    }
+
+    /**
+     * The parsing of one page of sets. The body is read while it is parsed, a slow network shows here too.
+     */
+    @Name("com.fubukicoeur.PageParse")
+    @Label("Page Parse")
+    @Category({ CATEGORY, "Parse" })
+    @StackTrace(false)
+    public static final class PageParse extends Event {
+        @Label("Event Slug")
+        public String eventSlug;
+
+        @Label("Page")
+        public int page;
+
+        @Label("Sets Kept")
+        @Description("Streamed sets, the ones that get a title")
+        public int setsKept;
+
+        @Label("Sets Skipped")
+        @Description("Sets without a stream")
+        public int setsSkipped;
+    }
+
+    /**
+     * Titles written to the output file, one page of them or the whole file.
+     */
+    @Name("com.fubukicoeur.OutputWrite")
+    @Label("Output Write")
+    @Category({ CATEGORY, "Output" })
+    @StackTrace(false)
+    public static final class OutputWrite extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Page")
+        @Description("0 when the whole file is written at once")
+        public int page;
+
+        @Label("Titles")
+        public int titles;
+    }
+}
@@ -0,0 +1,200 @@
+package com.fubukicoeur;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of every fetch of the process: requests, bytes, rate limit waits, retries, parsing and writing.
+ * Registered in JMX as "com.fubukicoeur:type=FetchMetrics", the Cli prints them with --metrics.
+ *
+ * The counters are LongAdders, the pages of an event are fetched by several threads at the same time.
+ */
+public final class FetchMetrics implements FetchMetricsMBean {
+    public static final String OBJECT_NAME = "com.fubukicoeur:type=FetchMetrics";
+
+    private static final FetchMetrics INSTANCE = new FetchMetrics();
+
+    static {
+        // The platform MBean server takes a while to start, the first page doesn't wait for it
+        Thread.ofVirtual().name("metrics-jmx").start(() -> {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException | RuntimeException e) {
+                System.err.println("Metrics not registered in JMX: " + e.getMessage());
+            }
+        });
+    }
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder requestNanos = new LongAdder();
+    private final LongAccumulator maxRequestNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder rateLimitWaits = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder pagesParsed = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder setsKept = new LongAdder();
+    private final LongAdder setsSkipped = new LongAdder();
+    private final LongAdder pagesWritten = new LongAdder();
+    private final LongAdder titlesWritten = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    private FetchMetrics() {
+    }
+
+    public static FetchMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param nanos From sending the request to the end of its body.
+     * @param status The HTTP status, 0 if there was no response.
+     * @param bytes The bytes of the body, decompressed.
+     */
+    void requestDone(long nanos, int status, long bytes) {
+        requests.increment();
+        if (status != 200) {
+            failedRequests.increment();
+        }
+        responseBytes.add(bytes);
+        requestNanos.add(nanos);
+        maxRequestNanos.accumulate(nanos);
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    void rateLimitWaited(long nanos) {
+        rateLimitWaits.increment();
+        rateLimitWaitNanos.add(nanos);
+    }
+
+    void pageParsed(long nanos, int kept, int skipped) {
+        pagesParsed.increment();
+        parseNanos.add(nanos);
+        setsKept.add(kept);
+        setsSkipped.add(skipped);
+    }
+
+    /**
+     * @param titles The titles written, a page of them or a whole file.
+     */
+    void written(long nanos, int titles) {
+        pagesWritten.increment();
+        titlesWritten.add(titles);
+        writeNanos.add(nanos);
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public double getAverageRequestMillis() {
+        long count = requests.sum();
+        return count == 0 ? 0 : millis(requestNanos.sum()) / count;
+    }
+
+    @Override
+    public double getMaxRequestMillis() {
+        return millis(maxRequestNanos.get());
+    }
+
+    @Override
+    public long getRateLimitWaits() {
+        return rateLimitWaits.sum();
+    }
+
+    @Override
+    public double getRateLimitWaitMillis() {
+        return millis(rateLimitWaitNanos.sum());
+    }
+
+    @Override
+    public long getPagesParsed() {
+        return pagesParsed.sum();
+    }
+
+    @Override
+    public double getParseMillis() {
+        return millis(parseNanos.sum());
+    }
+
+    @Override
+    public long getSetsKept() {
+        return setsKept.sum();
+    }
+
+    @Override
+    public long getSetsSkipped() {
+        return setsSkipped.sum();
+    }
+
+    @Override
+    public long getPagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    @Override
+    public long getTitlesWritten() {
+        return titlesWritten.sum();
+    }
+
+    @Override
+    public double getWriteMillis() {
+        return millis(writeNanos.sum());
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] { requests, failedRequests, retries, responseBytes, requestNanos,
+                rateLimitWaits, rateLimitWaitNanos, pagesParsed, parseNanos, setsKept, setsSkipped, pagesWritten,
+                titlesWritten, writeNanos }) {
+            adder.reset();
+        }
+        maxRequestNanos.reset();
+    }
+
+    /**
+     * @return The counters on a few lines, for the logs.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, """
+                Requests: %d (%d failed, %d retries), %,d bytes, %.1f ms average, %.1f ms max
+                Rate limit: %d waits, %.1f ms
+                Parsing: %d pages, %.1f ms, %d sets kept, %d skipped
+                Writing: %d pages, %d titles, %.1f ms""",
+                getRequests(), getFailedRequests(), getRetries(), getResponseBytes(), getAverageRequestMillis(),
+                getMaxRequestMillis(), getRateLimitWaits(), getRateLimitWaitMillis(), getPagesParsed(),
+                getParseMillis(), getSetsKept(), getSetsSkipped(), getPagesWritten(), getTitlesWritten(),
+                getWriteMillis());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.fubukicoeur;
+
+/**
+ * What FetchMetrics shows in JMX (jconsole, VisualVM...), totals since the start of the process or the last reset.
+ */
+public interface FetchMetricsMBean {
+    long getRequests();
+
+    /**
+     * @return The requests that got no response or a status other than 200.
+     */
+    long getFailedRequests();
+
+    long getRetries();
+
+    long getResponseBytes();
+
+    double getAverageRequestMillis();
+
+    double getMaxRequestMillis();
+
+    long getRateLimitWaits();
+
+    double getRateLimitWaitMillis();
+
+    long getPagesParsed();
+
+    double getParseMillis();
+
+    long getSetsKept();
+
+    long getSetsSkipped();
+
+    long getPagesWritten();
+
+    long getTitlesWritten();
+
+    double getWriteMillis();
+
+    void reset();
+}
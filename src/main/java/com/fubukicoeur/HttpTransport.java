@@ -0,0 +1,148 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * One long lived HttpClient for all the calls to the API.
+ * Creating a new client for each request means a new connection and a new TLS handshake every time,
+ * with this one the connection is kept and HTTP/2 streams are reused between pages.
+ * It also asks for gzip and decompresses the body while it is read.
+ */
+public class HttpTransport {
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final HttpTransport SHARED = new HttpTransport(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong tlsRequestCount = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    // Every connection has its own TLS session, so a session we never saw means a new connection
+    private final Map<SSLSession, Boolean> seenSessions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Creates a transport with its own HttpClient.
+     *
+     * @param connectTimeout Max time to open a connection.
+     * @param requestTimeout Max time to wait for the response headers of a request.
+     */
+    public HttpTransport(Duration connectTimeout, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * @return The transport shared by the whole process, used by default by ApiCalls.
+     */
+    public static HttpTransport shared() {
+        return SHARED;
+    }
+
+    /**
+     * Sends a JSON POST request.
+     * The caller has to close the returned response so the connection can be reused.
+     *
+     * @param uri The URL to call.
+     * @param bearerToken The token put in the Authorization header.
+     * @param jsonBody The request body.
+     * @return The response, with a body that is already decompressed.
+     */
+    public Response postJson(URI uri, String bearerToken, byte[] jsonBody) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept-Encoding", "gzip, deflate")
+                .header("Authorization", "Bearer " + bearerToken)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonBody))
+                .build();
+
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        requestCount.incrementAndGet();
+        SSLSession session = response.sslSession().orElse(null);
+        boolean tls = session != null;
+        boolean newConnection = tls && seenSessions.put(session, Boolean.TRUE) == null;
+        if (tls) {
+            tlsRequestCount.incrementAndGet();
+        }
+        if (newConnection) {
+            connectionsOpened.incrementAndGet();
+        }
+
+        return new Response(response.statusCode(), response.headers(), response.version(), decode(response),
+                tls, newConnection);
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim();
+        InputStream body = response.body();
+        if (encoding.equalsIgnoreCase("gzip")) {
+            return new GZIPInputStream(body, 16 * 1024);
+        }
+        if (encoding.equalsIgnoreCase("deflate")) {
+            return new InflaterInputStream(body);
+        }
+        return body;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The number of requests sent over https, the only ones the connection counts know about.
+     */
+    public long getTlsRequestCount() {
+        return tlsRequestCount.get();
+    }
+
+    /**
+     * Only TLS connections can be counted (by their session), the plain http requests of a local mock
+     * count neither as opened nor as reused.
+     *
+     * @return The number of connections opened since this transport was created.
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * @return The number of https requests sent over a connection that was already open.
+     */
+    public long getConnectionsReused() {
+        return Math.max(0, tlsRequestCount.get() - connectionsOpened.get());
+    }
+
+    /**
+     * A response from the server, the body stream gives the decompressed bytes.
+     * tls and newConnection tell how the request went out, so a caller can count its own connections.
+     */
+    public record Response(int statusCode, HttpHeaders headers, HttpClient.Version version, InputStream body,
+                           boolean tls, boolean newConnection) implements AutoCloseable {
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
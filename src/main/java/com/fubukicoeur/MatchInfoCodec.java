@@ -0,0 +1,77 @@
+package com.fubukicoeur;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary format of MatchInfo for the files we keep on disk (cache, checkpoints).
+ * The character ids are written in pick order with the id of the game, the names come from
+ * the CharacterRegistry of that game when the match is read back.
+ */
+public final class MatchInfoCodec {
+
+    private MatchInfoCodec() {
+    }
+
+    public static void write(DataOutput out, MatchInfo match) throws IOException {
+        out.writeUTF(match.getSetId() != null ? match.getSetId() : "");
+        out.writeUTF(match.getRound());
+        out.writeUTF(match.getPlayer1Tag());
+        out.writeUTF(match.getPlayer2Tag());
+        out.writeInt(match.getCharacters().getVideogameId());
+        writeCharacters(out, match.getPlayer1Characters());
+        writeCharacters(out, match.getPlayer2Characters());
+        out.writeBoolean(match.isMultiplePhases());
+        out.writeInt(match.getEntrants());
+        out.writeBoolean(match.isFirstPhase());
+    }
+
+    public static MatchInfo read(DataInput in) throws IOException {
+        String setId = in.readUTF();
+        String round = in.readUTF();
+        String player1Tag = in.readUTF();
+        String player2Tag = in.readUTF();
+        CharacterRegistry characters = CharacterRegistry.forVideogame(in.readInt());
+        int[] player1Characters = readCharacters(in);
+        int[] player2Characters = readCharacters(in);
+        boolean multiplePhases = in.readBoolean();
+        int entrants = in.readInt();
+        boolean isFirstPhase = in.readBoolean();
+        return new MatchInfo(setId.isEmpty() ? null : setId, round, player1Tag, player2Tag,
+                player1Characters, player2Characters, characters, multiplePhases, entrants, isFirstPhase);
+    }
+
+    public static void writeList(DataOutput out, List<MatchInfo> matches) throws IOException {
+        out.writeInt(matches.size());
+        for (MatchInfo match : matches) {
+            write(out, match);
+        }
+    }
+
+    public static List<MatchInfo> readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<MatchInfo> matches = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            matches.add(read(in));
+        }
+        return matches;
+    }
+
+    private static void writeCharacters(DataOutput out, int[] characters) throws IOException {
+        out.writeShort(characters.length);
+        for (int id : characters) {
+            out.writeInt(id);
+        }
+    }
+
+    private static int[] readCharacters(DataInput in) throws IOException {
+        int[] characters = new int[in.readUnsignedShort()];
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = in.readInt();
+        }
+        return characters;
+    }
+}
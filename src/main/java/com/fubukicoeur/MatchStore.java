@@ -0,0 +1,258 @@
+package com.fubukicoeur;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Many matches (an archive of events, a whole season) in a few primitive arrays instead of one MatchInfo each.
+ *
+ * A MatchInfo costs about 300 bytes with its strings and arrays. Here a row is about 45 bytes:
+ * - the tags and the round are numbers in a StringDictionary, a player seen in 50 sets is one String
+ * - the characters of a player are one long, up to 7 ordinals of CharacterRegistry (one byte each)
+ *   in pick order, a set with more characters (or an unknown id) keeps its ids on the side
+ * - the set id is a long when it's a number, like the start.gg ids
+ *
+ * get rebuilds a MatchInfo when one is needed, its strings are the shared ones of the dictionary.
+ * Not thread safe, fill it from one thread then read it from any.
+ */
+public final class MatchStore implements Iterable<MatchInfo> {
+    private static final int DEFAULT_CAPACITY = 256;
+    // Characters that don't fit in a long, they are in overflowCharacters
+    private static final long OVERFLOW = -1L;
+    private static final int MAX_PACKED_CHARACTERS = 7;
+    private static final int NO_SET_ID = -1;
+
+    private static final byte MULTIPLE_PHASES = 1;
+    private static final byte FIRST_PHASE = 2;
+
+    private final StringDictionary strings = new StringDictionary();
+    private final List<CharacterRegistry> registries = new ArrayList<>();
+    // row * 2 + player (0 or 1) -> ids, rare
+    private final Map<Integer, int[]> overflowCharacters = new HashMap<>();
+
+    private int size;
+    // >= 0 the numeric id, -1 no id, below that -(2 + code) of a id that is not a number
+    private long[] setIds;
+    private int[] rounds;
+    private int[] player1Tags;
+    private int[] player2Tags;
+    private long[] player1Characters;
+    private long[] player2Characters;
+    private short[] registryIndexes;
+    private int[] entrants;
+    private byte[] flags;
+
+    public MatchStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity How many rows before the arrays have to grow.
+     */
+    public MatchStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        setIds = new long[capacity];
+        rounds = new int[capacity];
+        player1Tags = new int[capacity];
+        player2Tags = new int[capacity];
+        player1Characters = new long[capacity];
+        player2Characters = new long[capacity];
+        registryIndexes = new short[capacity];
+        entrants = new int[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * @return The row of the match.
+     */
+    public int add(MatchInfo match) {
+        if (size == setIds.length) {
+            grow();
+        }
+        int row = size;
+        CharacterRegistry registry = match.getCharacters();
+        setIds[row] = encodeSetId(match.getSetId());
+        rounds[row] = strings.code(match.getRound());
+        player1Tags[row] = strings.code(match.getPlayer1Tag());
+        player2Tags[row] = strings.code(match.getPlayer2Tag());
+        player1Characters[row] = pack(row, 0, match.getPlayer1Characters(), registry);
+        player2Characters[row] = pack(row, 1, match.getPlayer2Characters(), registry);
+        registryIndexes[row] = registryIndex(registry);
+        entrants[row] = match.getEntrants();
+        flags[row] = (byte) ((match.isMultiplePhases() ? MULTIPLE_PHASES : 0) | (match.isFirstPhase() ? FIRST_PHASE : 0));
+        size++;
+        return row;
+    }
+
+    public void addAll(Collection<MatchInfo> matches) {
+        for (MatchInfo match : matches) {
+            add(match);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A MatchInfo with the values of the row.
+     */
+    public MatchInfo get(int row) {
+        checkRow(row);
+        CharacterRegistry registry = registries.get(registryIndexes[row]);
+        return new MatchInfo(getSetId(row), strings.value(rounds[row]), strings.value(player1Tags[row]),
+                strings.value(player2Tags[row]), unpack(row, 0, player1Characters[row], registry),
+                unpack(row, 1, player2Characters[row], registry), registry, (flags[row] & MULTIPLE_PHASES) != 0,
+                entrants[row], (flags[row] & FIRST_PHASE) != 0);
+    }
+
+    public String getSetId(int row) {
+        checkRow(row);
+        long setId = setIds[row];
+        if (setId >= 0) {
+            return Long.toString(setId);
+        }
+        return setId == NO_SET_ID ? null : strings.value((int) (-setId - 2));
+    }
+
+    public String getRound(int row) {
+        checkRow(row);
+        return strings.value(rounds[row]);
+    }
+
+    public String getPlayer1Tag(int row) {
+        checkRow(row);
+        return strings.value(player1Tags[row]);
+    }
+
+    public String getPlayer2Tag(int row) {
+        checkRow(row);
+        return strings.value(player2Tags[row]);
+    }
+
+    /**
+     * @return The dictionary of the tags and rounds, a tag has the same code in every row.
+     */
+    public StringDictionary getStrings() {
+        return strings;
+    }
+
+    /**
+     * @return The codes of the tags of player 1 (or 2), one per row. Only the first size() values are rows.
+     */
+    public int[] player1TagCodes() {
+        return player1Tags;
+    }
+
+    public int[] player2TagCodes() {
+        return player2Tags;
+    }
+
+    /**
+     * Shrinks the arrays to the number of rows, once the store is full.
+     */
+    public void trimToSize() {
+        resize(Math.max(1, size));
+    }
+
+    @Override
+    public Iterator<MatchInfo> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public MatchInfo next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    private long encodeSetId(String setId) {
+        if (setId == null) {
+            return NO_SET_ID;
+        }
+        // start.gg ids are numbers, "preview_..." ids of sets not started yet are not
+        if (!setId.isEmpty() && setId.length() < 19 && setId.chars().allMatch(c -> c >= '0' && c <= '9')
+                && (setId.length() == 1 || setId.charAt(0) != '0')) {
+            return Long.parseLong(setId);
+        }
+        return -2L - strings.code(setId);
+    }
+
+    private short registryIndex(CharacterRegistry registry) {
+        int index = registries.indexOf(registry);
+        if (index < 0) {
+            index = registries.size();
+            registries.add(registry);
+        }
+        return (short) index;
+    }
+
+    // Byte i is the ordinal + 1 of the i-th character, 0 after the last one
+    private long pack(int row, int player, int[] ids, CharacterRegistry registry) {
+        if (ids.length <= MAX_PACKED_CHARACTERS) {
+            long packed = 0;
+            int i = 0;
+            for (; i < ids.length; i++) {
+                int ordinal = registry.ordinal(ids[i]);
+                if (ordinal < 0 || ordinal > 254) {
+                    break;
+                }
+                packed |= (long) (ordinal + 1) << (8 * i);
+            }
+            if (i == ids.length) {
+                return packed;
+            }
+        }
+        overflowCharacters.put(row * 2 + player, ids.clone());
+        return OVERFLOW;
+    }
+
+    private int[] unpack(int row, int player, long packed, CharacterRegistry registry) {
+        if (packed == OVERFLOW) {
+            return overflowCharacters.get(row * 2 + player).clone();
+        }
+        int count = (64 - Long.numberOfLeadingZeros(packed) + 7) / 8;
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = registry.idAt((int) ((packed >>> (8 * i)) & 0xFF) - 1);
+        }
+        return ids;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private void grow() {
+        resize(setIds.length + (setIds.length >> 1) + 1);
+    }
+
+    private void resize(int capacity) {
+        setIds = Arrays.copyOf(setIds, capacity);
+        rounds = Arrays.copyOf(rounds, capacity);
+        player1Tags = Arrays.copyOf(player1Tags, capacity);
+        player2Tags = Arrays.copyOf(player2Tags, capacity);
+        player1Characters = Arrays.copyOf(player1Characters, capacity);
+        player2Characters = Arrays.copyOf(player2Characters, capacity);
+        registryIndexes = Arrays.copyOf(registryIndexes, capacity);
+        entrants = Arrays.copyOf(entrants, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+}
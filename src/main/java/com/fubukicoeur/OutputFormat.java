@@ -0,0 +1,24 @@
+package com.fubukicoeur;
+
+import java.util.Locale;
+
+/**
+ * The formats the titles can be written in.
+ */
+public enum OutputFormat {
+    /** One title per line, what the app always wrote in sets.txt. */
+    TXT,
+    /** One line per set with the title and its fields. */
+    CSV,
+    /** An array with one object per set. */
+    JSON;
+
+    /**
+     * @param name The format name, case doesn't matter.
+     * @return The format.
+     * @throws IllegalArgumentException If there is no such format.
+     */
+    public static OutputFormat parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
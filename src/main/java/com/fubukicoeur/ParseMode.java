@@ -0,0 +1,21 @@
+package com.fubukicoeur;
+
+/**
+ * The ways a sets page can be parsed, both give the exact same result.
+ */
+public enum ParseMode {
+    /** Reads the whole response as a Jackson tree, then walks it. */
+    TREE(new TreeSetsParser()),
+    /** Reads the response token by token and builds each MatchInfo when its set closes. */
+    STREAMING(new StreamingSetsParser());
+
+    private final SetsPageParser parser;
+
+    ParseMode(SetsPageParser parser) {
+        this.parser = parser;
+    }
+
+    public SetsPageParser parser() {
+        return parser;
+    }
+}
@@ -0,0 +1,156 @@
+package com.fubukicoeur;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window for the start.gg rate limit (80 requests every 60 seconds for a token):
+ * a request can go out when less than the limit were sent during the last period.
+ * Unlike a token bucket that starts full and refills during the minute, this never lets
+ * more than the limit out in any period, the first minute included.
+ * There is one limiter per API token for the whole process, so several ApiCalls
+ * running at the same time with the same token share the same budget.
+ */
+public class RateLimiter {
+    public static final int DEFAULT_REQUESTS = 80;
+    public static final Duration DEFAULT_PERIOD = Duration.ofSeconds(60);
+    // start.gg counts a request when it gets it, a request still on the way when our window slides
+    // would land in the next one, so our window is a bit longer than theirs
+    public static final Duration IN_FLIGHT_MARGIN = Duration.ofSeconds(5);
+
+    private static final Map<String, RateLimiter> BY_TOKEN = new ConcurrentHashMap<>();
+
+    private final int limit;
+    private final long periodNanos;
+    // When the requests of the current window were sent, oldest first (a ring of size entries from head)
+    private long[] sent = new long[16];
+    private int head;
+    private int size;
+    private long pausedUntil;
+
+    /**
+     * Creates a limiter that has sent nothing yet.
+     *
+     * @param requests The number of requests allowed per period, also the max burst.
+     * @param period The period of the limit.
+     */
+    public RateLimiter(int requests, Duration period) {
+        this.limit = requests;
+        this.periodNanos = period.toNanos();
+        this.pausedUntil = System.nanoTime();
+    }
+
+    /**
+     * @param apiToken The API token.
+     * @return The limiter shared by every request made with this token.
+     */
+    public static RateLimiter forToken(String apiToken) {
+        return BY_TOKEN.computeIfAbsent(apiToken,
+                _ -> new RateLimiter(DEFAULT_REQUESTS, DEFAULT_PERIOD.plus(IN_FLIGHT_MARGIN)));
+    }
+
+    /**
+     * Replaces the limiter of a token, for a server that doesn't have the start.gg limit (a local mock for example).
+     *
+     * @param apiToken The API token.
+     * @param limiter The limiter to use for it from now on.
+     */
+    public static void setForToken(String apiToken, RateLimiter limiter) {
+        BY_TOKEN.put(apiToken, limiter);
+    }
+
+    /**
+     * Waits until a request can be sent and counts it in the window.
+     *
+     * @return The time spent waiting, in nanoseconds.
+     */
+    public long acquire() throws InterruptedException {
+        long waited = 0;
+        while (true) {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                wait = nanosUntilAvailable(now);
+                if (wait == 0) {
+                    record(now);
+                    return waited;
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+            waited += wait;
+        }
+    }
+
+    /**
+     * Counts a request only if it can be sent right now.
+     *
+     * @return true if the request can go.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (nanosUntilAvailable(now) > 0) {
+            return false;
+        }
+        record(now);
+        return true;
+    }
+
+    /**
+     * Called when the server told us we went too fast (429 or Retry-After),
+     * nobody using this limiter sends anything until the delay is over.
+     *
+     * @param delay How long to stop.
+     */
+    public synchronized void pauseFor(Duration delay) {
+        long until = System.nanoTime() + delay.toNanos();
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+    }
+
+    /**
+     * @return The number of requests that could be sent right now without waiting.
+     */
+    public synchronized int availableRequests() {
+        long now = System.nanoTime();
+        expire(now);
+        return now - pausedUntil < 0 ? 0 : Math.max(0, limit - size);
+    }
+
+    /**
+     * @return How long acquire would wait right now, in nanoseconds, 0 if a request can be sent.
+     */
+    public synchronized long nanosUntilAvailable() {
+        return nanosUntilAvailable(System.nanoTime());
+    }
+
+    private long nanosUntilAvailable(long now) {
+        expire(now);
+        long paused = Math.max(0, pausedUntil - now);
+        // The oldest request of the window has to leave it before the next one can go
+        long full = size < limit ? 0 : Math.max(1, sent[head] + periodNanos - now);
+        return Math.max(paused, full);
+    }
+
+    private void expire(long now) {
+        while (size > 0 && now - sent[head] >= periodNanos) {
+            head = (head + 1) % sent.length;
+            size--;
+        }
+    }
+
+    private void record(long now) {
+        if (size == sent.length) {
+            long[] grown = new long[sent.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = sent[(head + i) % sent.length];
+            }
+            sent = grown;
+            head = 0;
+        }
+        sent[(head + size) % sent.length] = now;
+        size++;
+    }
+}
@@ -0,0 +1,326 @@
+package com.fubukicoeur;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sits in front of the transport and makes sure we respect the start.gg rate limit.
+ * Every request takes a token from the bucket of its API token, rate limited and 5xx
+ * responses, timeouts and dropped connections are retried with a random backoff,
+ * and Retry-After is used when the server gives it.
+ * With a TokenPool each attempt goes to the API token that has budget, and a token the API
+ * refuses is dropped from the pool and the request tried again with another one.
+ */
+public class RequestScheduler {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final HttpTransport transport;
+    private final URI apiUri;
+    private final Counts counts;
+
+    /**
+     * @param transport The transport used to send the requests.
+     * @param apiUri The GraphQL endpoint.
+     */
+    public RequestScheduler(HttpTransport transport, URI apiUri) {
+        this(transport, apiUri, new Counts());
+    }
+
+    /**
+     * @param counts Counts the requests sent by this scheduler, it can be shared with the next scheduler
+     *               of the same caller.
+     */
+    public RequestScheduler(HttpTransport transport, URI apiUri, Counts counts) {
+        this.transport = transport;
+        this.apiUri = apiUri;
+        this.counts = counts;
+    }
+
+    public Counts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Sends a request, waiting for the rate limit and retrying when it makes sense.
+     *
+     * @param apiToken The API token, it also selects the rate limit bucket.
+     * @param jsonBody The GraphQL request body.
+     * @param reader Reads the body of a 200 response, it can throw an ApiException for GraphQL errors.
+     * @return What the reader returned.
+     * @throws ApiException If the API keeps failing or gives an error that can't be retried.
+     */
+    public <T> T execute(String apiToken, byte[] jsonBody, BodyReader<T> reader)
+            throws IOException, InterruptedException {
+        return execute(TokenPool.of(apiToken), jsonBody, reader);
+    }
+
+    /**
+     * Same as the other execute, with the API tokens of a pool.
+     *
+     * @param tokens The API tokens, each attempt takes the one that can send first.
+     * @throws ApiException If the API refused every token of the pool.
+     */
+    public <T> T execute(TokenPool tokens, byte[] jsonBody, BodyReader<T> reader)
+            throws IOException, InterruptedException {
+        FetchMetrics metrics = FetchMetrics.get();
+        IOException lastError = null;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            FetchEvents.RateLimitWait waitEvent = new FetchEvents.RateLimitWait();
+            waitEvent.begin();
+            TokenPool.Lease lease = tokens.acquire();
+            String apiToken = lease.token();
+            RateLimiter limiter = RateLimiter.forToken(apiToken);
+            long waited = lease.waited();
+            if (waited > 0) {
+                waitEvent.commit();
+                metrics.rateLimitWaited(waited);
+            }
+            Duration retryAfter = null;
+
+            FetchEvents.ApiRequest requestEvent = new FetchEvents.ApiRequest();
+            requestEvent.begin();
+            requestEvent.attempt = attempt + 1;
+            long requestStart = System.nanoTime();
+            CountingInputStream body = null;
+            try (HttpTransport.Response response = transport.postJson(apiUri, apiToken, jsonBody)) {
+                counts.add(response);
+                int status = response.statusCode();
+                requestEvent.status = status;
+                if (status == 200) {
+                    body = new CountingInputStream(response.body());
+                    return reader.read(body);
+                }
+
+                ApiException error = ApiException.fromMessage(readErrorMessage(response), status);
+                if (tryAnotherToken(tokens, apiToken, error)) {
+                    attempt--;
+                    continue;
+                }
+                if (!error.isRetryable()) {
+                    throw error;
+                }
+                lastError = error;
+                retryAfter = parseRetryAfter(response).orElse(null);
+            } catch (ApiException e) {
+                if (tryAnotherToken(tokens, apiToken, e)) {
+                    attempt--;
+                    continue;
+                }
+                if (!e.isRetryable()) {
+                    throw e;
+                }
+                lastError = e;
+            } catch (HttpTimeoutException e) {
+                lastError = e;
+            } catch (IOException e) {
+                if (!isConnectionError(e)) {
+                    throw e;
+                }
+                lastError = e;
+            } finally {
+                // Also when the reader failed, the time and the bytes were spent anyway
+                requestEvent.responseBytes = body != null ? body.count : 0;
+                requestEvent.commit();
+                metrics.requestDone(System.nanoTime() - requestStart, requestEvent.status, requestEvent.responseBytes);
+            }
+
+            if (attempt == MAX_ATTEMPTS - 1) {
+                break;
+            }
+            Duration delay = retryAfter != null ? retryAfter : backoff(attempt);
+            boolean rateLimited = lastError instanceof ApiException apiError && apiError.isRateLimited();
+            if (rateLimited) {
+                // Everybody on this token has to stop, not only this request
+                limiter.pauseFor(delay);
+                if (tokens.getLiveCount() > 1) {
+                    // The pool skips the paused bucket, the next attempt can go out on another token now
+                    delay = Duration.ZERO;
+                }
+            }
+            // A ConnectException has no message, its name says enough
+            String reason = lastError.getMessage() != null ? lastError.getMessage() : lastError.getClass().getSimpleName();
+            System.out.println("Request failed (" + reason + "), retrying in " + delay.toMillis() + " ms");
+            FetchEvents.Retry retryEvent = new FetchEvents.Retry();
+            retryEvent.begin();
+            retryEvent.attempt = attempt + 1;
+            retryEvent.reason = reason;
+            retryEvent.rateLimited = rateLimited;
+            retryEvent.delay = delay.toMillis();
+            metrics.retried();
+            TimeUnit.MILLISECONDS.sleep(delay.toMillis());
+            retryEvent.commit();
+        }
+
+        throw lastError;
+    }
+
+    /**
+     * Throws if the response has a GraphQL "errors" array or the {"success": false} shape.
+     *
+     * @param root The parsed response.
+     * @throws ApiException With the first error message.
+     */
+    public static void throwIfErrors(JsonNode root) throws ApiException {
+        JsonNode errors = root.path("errors");
+        if (errors.isArray() && errors.size() > 0) {
+            throw ApiException.fromMessage(errors.get(0).path("message").asText("Unknown GraphQL error"), 200);
+        }
+        if (root.path("success").isBoolean() && !root.path("success").asBoolean()) {
+            throw ApiException.fromMessage(root.path("message").asText("Unknown API error"), 200);
+        }
+    }
+
+    // The connection failed or was dropped before we had the whole response, the same request can just be sent again
+    private static boolean isConnectionError(IOException e) {
+        if (e instanceof SocketException || e instanceof EOFException) {
+            return true;
+        }
+        // The HttpClient wraps some of them in a plain IOException, with the message of the cause
+        String message = e.getMessage();
+        return e.getCause() instanceof SocketException
+                || message != null && (message.contains("Connection reset") || message.contains("connection closed"));
+    }
+
+    // A refused token doesn't count as an attempt, the pool gets smaller each time so this ends
+    private static boolean tryAnotherToken(TokenPool tokens, String apiToken, ApiException error) {
+        return error.isAuthError() && tokens.refuse(apiToken, error.getMessage());
+    }
+
+    private static String readErrorMessage(HttpTransport.Response response) throws IOException {
+        String body = new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            if (root.hasNonNull("message")) {
+                return root.path("message").asText();
+            }
+            JsonNode errors = root.path("errors");
+            if (errors.isArray() && errors.size() > 0) {
+                return errors.get(0).path("message").asText();
+            }
+        } catch (IOException e) {
+            // Not JSON, we keep the raw body
+        }
+        return "HTTP " + response.statusCode() + (body.isBlank() ? "" : ": " + body.strip());
+    }
+
+    private static Optional<Duration> parseRetryAfter(HttpTransport.Response response) {
+        return response.headers().firstValue("Retry-After").flatMap(value -> {
+            try {
+                return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                    return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+                } catch (DateTimeParseException ignored) {
+                    return Optional.empty();
+                }
+            }
+        });
+    }
+
+    // Random time between half and all of the exponential backoff, so parallel requests don't retry together
+    private static Duration backoff(int attempt) {
+        long max = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(max / 2, max + 1));
+    }
+
+    /**
+     * Counts the bytes read, for the metrics.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * The requests one caller sent, unlike the transport counts that are for the whole process.
+     */
+    public static final class Counts {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong tlsRequests = new AtomicLong();
+        private final AtomicLong connectionsOpened = new AtomicLong();
+
+        private void add(HttpTransport.Response response) {
+            requests.incrementAndGet();
+            if (response.tls()) {
+                tlsRequests.incrementAndGet();
+            }
+            if (response.newConnection()) {
+                connectionsOpened.incrementAndGet();
+            }
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * @return The requests sent over https, the only ones the connection counts know about.
+         */
+        public long getTlsRequests() {
+            return tlsRequests.get();
+        }
+
+        public long getConnectionsOpened() {
+            return connectionsOpened.get();
+        }
+    }
+
+    /**
+     * Reads the body of a successful response.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+}
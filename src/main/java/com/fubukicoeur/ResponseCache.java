@@ -0,0 +1,257 @@
+package com.fubukicoeur;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache of parsed sets pages, kept on disk in the "cache" folder next to token.txt.
+ *
+ * Each page is one small binary file named after the hash of its key (API URL, slug, query, perPage, page).
+ * Pages fetched once the event was completed never expire, the others expire after a short TTL
+ * because sets can still change. When the folder gets bigger than the size cap, the least recently
+ * used pages are deleted.
+ */
+public class ResponseCache {
+    public static final Path DEFAULT_DIR = Path.of("cache");
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_LIVE_TTL = Duration.ofMinutes(2);
+
+    // "SVC3", the pages of the older formats (characters as strings, no set count) are fetched again
+    private static final int MAGIC = 0x53564333;
+    private static final String EXTENSION = ".page";
+    private static final long PERMANENT = Long.MAX_VALUE;
+
+    private static ResponseCache shared;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Duration liveTtl;
+    // File name -> size, in access order so the first entry is the least recently used
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Opens the cache, the folder is created if needed and the existing pages are indexed.
+     *
+     * @param dir The folder of the cache.
+     * @param maxBytes The size cap of the folder.
+     * @param liveTtl How long a page of an event that is not finished stays valid.
+     */
+    public ResponseCache(Path dir, long maxBytes, Duration liveTtl) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.liveTtl = liveTtl;
+        Files.createDirectories(dir);
+        loadIndex();
+    }
+
+    /**
+     * @return The cache in the default folder, or null if it can't be opened (the app works without it).
+     */
+    public static synchronized ResponseCache shared() {
+        if (shared == null) {
+            try {
+                shared = new ResponseCache(DEFAULT_DIR, DEFAULT_MAX_BYTES, DEFAULT_LIVE_TTL);
+            } catch (IOException e) {
+                System.err.println("Cache disabled: " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @param apiUrl The endpoint the page comes from, so the pages of a mock server never end up in a real run.
+     * @return The key of a sets page.
+     */
+    public static String pageKey(String apiUrl, String eventSlug, String query, int perPage, int page) {
+        return sha256(apiUrl).substring(0, 8) + "|" + eventSlug.toLowerCase(Locale.ROOT) + "|"
+                + sha256(query).substring(0, 16) + "|" + perPage + "|" + page;
+    }
+
+    /**
+     * @param key The key of the page.
+     * @return The cached page if it is there and not expired. Its phases are null, the matches are already built.
+     */
+    public Optional<SetsPage> get(String key) {
+        String fileName = fileName(key);
+        synchronized (this) {
+            if (!index.containsKey(fileName)) {
+                return Optional.empty();
+            }
+        }
+
+        Path file = dir.resolve(fileName);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                return Optional.empty();
+            }
+            long expiresAt = in.readLong();
+            if (expiresAt != PERMANENT && expiresAt < System.currentTimeMillis()) {
+                remove(fileName);
+                return Optional.empty();
+            }
+            int totalPages = in.readInt();
+            boolean eventCompleted = in.readBoolean();
+            int setCount = in.readInt();
+            List<MatchInfo> matches = MatchInfoCodec.readList(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(new SetsPage(totalPages, null, matches, eventCompleted, setCount));
+        } catch (IOException e) {
+            // Broken or half written file, it will be fetched again
+            remove(fileName);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a page, it expires after the live TTL unless permanent is true.
+     */
+    public void put(String key, SetsPage page, boolean permanent) {
+        String fileName = fileName(key);
+        Path file = dir.resolve(fileName);
+        Path temp = dir.resolve(fileName + ".tmp");
+        long expiresAt = permanent ? PERMANENT : System.currentTimeMillis() + liveTtl.toMillis();
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeLong(expiresAt);
+                out.writeInt(page.totalPages());
+                out.writeBoolean(page.eventCompleted());
+                out.writeInt(page.setCount());
+                MatchInfoCodec.writeList(out, page.matches());
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            added(fileName, Files.size(file));
+        } catch (IOException e) {
+            System.err.println("Could not write cache page " + key + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Nothing else we can do
+            }
+        }
+    }
+
+    /**
+     * Makes pages permanent, called once the API said the event is completed.
+     * Only the expiry in the header of each file is changed, the pages are not written again.
+     *
+     * @param keys The keys of the pages, a page that is not in the cache is skipped.
+     */
+    public void makePermanent(List<String> keys) {
+        for (String key : keys) {
+            String fileName = fileName(key);
+            synchronized (this) {
+                if (!index.containsKey(fileName)) {
+                    continue;
+                }
+            }
+            try (RandomAccessFile file = new RandomAccessFile(dir.resolve(fileName).toFile(), "rw")) {
+                if (file.readInt() == MAGIC && file.readUTF().equals(key)) {
+                    file.writeLong(PERMANENT);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not make cache page " + key + " permanent: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized void added(String fileName, long size) {
+        Long previous = index.put(fileName, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private synchronized void remove(String fileName) {
+        Long size = index.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(dir.resolve(fileName));
+        } catch (IOException e) {
+            System.err.println("Could not delete cache page " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Could not delete cache page " + eldest.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // The last modified time is the last access time, so the LRU order survives a restart
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>();
+        for (Path file : files) {
+            entries.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+        entries.sort((a, b) -> a.getValue().lastModifiedTime().compareTo(b.getValue().lastModifiedTime()));
+
+        synchronized (this) {
+            for (Map.Entry<Path, BasicFileAttributes> entry : entries) {
+                index.put(entry.getKey().getFileName().toString(), entry.getValue().size());
+                totalBytes += entry.getValue().size();
+            }
+            evict();
+        }
+    }
+
+    private static String fileName(String key) {
+        return sha256(key).substring(0, 32) + EXTENSION;
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.fubukicoeur;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.DefaultCellEditor;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.TransferHandler;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * The results table under the form: every title as soon as its page is written, editable,
+ * with how many characters are left before the YouTube limit (also while a title is being typed).
+ *
+ * Ctrl+C and the right click menu copy the titles of the selected rows, one per line.
+ * "Save edits" writes the titles of the table (edited ones included) to the output file.
+ */
+public final class ResultsPanel extends JPanel {
+    private static final Color OVER_LIMIT = new Color(200, 30, 30);
+    private static final Color NEAR_LIMIT = new Color(200, 120, 0);
+    // Below this many characters left the count shows in orange
+    private static final int NEAR_LIMIT_CHARS = 10;
+
+    private final SetsTableModel model = new SetsTableModel();
+    private final JTable table = new JTable(model);
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JButton saveButton = new JButton("Save edits");
+    private final JTextField titleEditor = new JTextField();
+    private Path output;
+
+    public ResultsPanel(Font font) {
+        super(new BorderLayout(0, 5));
+        setBorder(BorderFactory.createEmptyBorder(0, 15, 15, 15));
+
+        // A fixed row height lets the table find the visible rows without measuring every row
+        table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 4);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(SetsTableModel.NUMBER_COLUMN).setMaxWidth(50);
+        table.getColumnModel().getColumn(SetsTableModel.CHARS_LEFT_COLUMN).setMaxWidth(80);
+        table.getColumnModel().getColumn(SetsTableModel.CHARS_LEFT_COLUMN).setCellRenderer(new CharsLeftRenderer());
+        table.getColumnModel().getColumn(SetsTableModel.TITLE_COLUMN).setCellEditor(new DefaultCellEditor(titleEditor));
+        // The characters left follow the title while it's typed, not only once the edit is done
+        titleEditor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                repaintEditedCharsLeft();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                repaintEditedCharsLeft();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                repaintEditedCharsLeft();
+            }
+        });
+        table.setTransferHandler(new TitlesTransferHandler());
+        table.setComponentPopupMenu(createPopupMenu());
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                // A right click on a row that is not selected selects it, like in a file explorer
+                int row = table.rowAtPoint(e.getPoint());
+                if (SwingUtilities.isRightMouseButton(e) && row >= 0 && !table.isRowSelected(row)) {
+                    table.setRowSelectionInterval(row, row);
+                }
+            }
+        });
+        model.addTableModelListener(e -> {
+            if (e.getType() != TableModelEvent.DELETE) {
+                updateSummary();
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(570, 200));
+        add(scrollPane, BorderLayout.CENTER);
+
+        saveButton.setEnabled(false);
+        saveButton.addActionListener(_ -> saveEdits());
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        bottom.add(saveButton);
+        bottom.add(Box.createHorizontalStrut(10));
+        bottom.add(summaryLabel);
+        add(bottom, BorderLayout.SOUTH);
+
+        if (font != null) {
+            summaryLabel.setFont(font);
+            saveButton.setFont(font);
+        }
+    }
+
+    public SetsTableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Empties the table before a new run, on the EDT.
+     *
+     * @param output The file the run writes, where "Save edits" writes too.
+     * @return The number of the run, given to SetsTableModel.addLater.
+     */
+    public int start(Path output) {
+        this.output = output;
+        saveButton.setEnabled(false);
+        return model.clear();
+    }
+
+    /**
+     * Called on the EDT once the run is over, the file can be saved again.
+     */
+    public void finish() {
+        saveButton.setEnabled(output != null && model.getRowCount() > 0);
+    }
+
+    private JPopupMenu createPopupMenu() {
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem copyItem = new JMenuItem("Copy title");
+        copyItem.addActionListener(_ -> copySelectedTitles());
+        menu.add(copyItem);
+        JMenuItem resetItem = new JMenuItem("Reset title");
+        resetItem.addActionListener(_ -> {
+            for (int row : table.getSelectedRows()) {
+                model.resetTitle(row);
+            }
+        });
+        menu.add(resetItem);
+        return menu;
+    }
+
+    private void repaintEditedCharsLeft() {
+        int row = table.getEditingRow();
+        if (row >= 0) {
+            table.repaint(table.getCellRect(row, SetsTableModel.CHARS_LEFT_COLUMN, false));
+        }
+    }
+
+    private void copySelectedTitles() {
+        String titles = selectedTitles();
+        if (!titles.isEmpty()) {
+            getToolkit().getSystemClipboard().setContents(new StringSelection(titles), null);
+        }
+    }
+
+    private String selectedTitles() {
+        StringBuilder titles = new StringBuilder();
+        for (int row : table.getSelectedRows()) {
+            if (titles.length() > 0) {
+                titles.append(System.lineSeparator());
+            }
+            titles.append(model.getTitle(row));
+        }
+        return titles.toString();
+    }
+
+    private void saveEdits() {
+        if (table.isEditing()) {
+            table.getCellEditor().stopCellEditing();
+        }
+        try {
+            Files.write(output, model.getTitles(), StandardCharsets.UTF_8);
+            JOptionPane.showMessageDialog(this, model.getRowCount() + " titles saved to " + output, "Success",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error : " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void updateSummary() {
+        int rows = model.getRowCount();
+        if (rows == 0) {
+            summaryLabel.setText(" ");
+            return;
+        }
+        int overLimit = model.getOverLimitCount();
+        int edited = model.getEditedCount();
+        summaryLabel.setText(rows + " titles" + (edited > 0 ? ", " + edited + " edited" : "")
+                + (overLimit > 0 ? ", " + overLimit + " over " + TitleTemplate.YOUTUBE_MAX_LENGTH + " characters" : ""));
+    }
+
+    /**
+     * Shows the characters left in orange near the limit and in red over it.
+     */
+    private final class CharsLeftRenderer extends DefaultTableCellRenderer {
+        private CharsLeftRenderer() {
+            setHorizontalAlignment(RIGHT);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            int left = (Integer) value;
+            if (row == table.getEditingRow()) {
+                left = TitleTemplate.YOUTUBE_MAX_LENGTH - titleEditor.getText().strip().length();
+                setText(String.valueOf(left));
+            }
+            if (!isSelected) {
+                setForeground(left < 0 ? OVER_LIMIT : left < NEAR_LIMIT_CHARS ? NEAR_LIMIT : table.getForeground());
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Ctrl+C copies the titles only, not the other columns.
+     */
+    private final class TitlesTransferHandler extends TransferHandler {
+        @Override
+        public int getSourceActions(JComponent c) {
+            return COPY;
+        }
+
+        @Override
+        protected Transferable createTransferable(JComponent c) {
+            return new StringSelection(selectedTitles());
+        }
+    }
+}
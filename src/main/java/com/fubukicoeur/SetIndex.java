@@ -0,0 +1,590 @@
+package com.fubukicoeur;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local index of the streamed sets of every event we fetched, to find "all the sets of player X"
+ * or "all the Steve vs Pikachu sets" without fetching the events again.
+ *
+ * Each event is one segment file in "cache/index", memory mapped when the index is opened. A segment has:
+ * - the sets, in the MatchInfoCodec format, with the offset of each one
+ * - the lower case tags sorted, each with the sets it plays in (a prefix is a range of tags)
+ * - the character ids sorted, each with the sets it plays in
+ * A search looks up the posting lists of each segment, and only decodes the sets that match.
+ *
+ * Fetching an event again replaces its segment, the others are not touched.
+ */
+public class SetIndex {
+    public static final Path DEFAULT_DIR = ResponseCache.DEFAULT_DIR.resolve("index");
+
+    // "SVI1"
+    private static final int MAGIC = 0x53564931;
+    private static final String EXTENSION = ".seg";
+
+    private static SetIndex shared;
+
+    private final Path dir;
+    // Lower case slug -> segment
+    private final Map<String, Segment> segments = new TreeMap<>();
+
+    /**
+     * Opens the index, the folder is created if needed and every segment in it is mapped.
+     *
+     * @param dir The folder of the index.
+     */
+    public SetIndex(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        // The names end with the time they were written, the newest segment of an event wins
+        files.sort(null);
+        for (Path file : files) {
+            try {
+                Segment segment = Segment.map(file);
+                Segment previous = segments.put(segment.eventSlug.toLowerCase(Locale.ROOT), segment);
+                if (previous != null) {
+                    deleteQuietly(previous.file);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Skipping broken index segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The index in the default folder, or null if it can't be opened (the app works without it).
+     */
+    public static synchronized SetIndex shared() {
+        if (shared == null) {
+            try {
+                shared = new SetIndex(DEFAULT_DIR);
+            } catch (IOException e) {
+                System.err.println("Index disabled: " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Adds the streamed sets of an event, or replaces them if the event is already in the index.
+     *
+     * @param eventSlug The slug of the event.
+     * @param eventName The event name given for the titles.
+     * @param matches Every streamed set of the event.
+     */
+    public void addEvent(String eventSlug, String eventName, List<MatchInfo> matches) throws IOException {
+        try (EventWriter writer = writeEvent(eventSlug, eventName)) {
+            writer.append(matches);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Adds an event, printing the error instead of throwing: a failed index update should not fail a fetch.
+     */
+    public void addEventQuietly(String eventSlug, String eventName, List<MatchInfo> matches) {
+        try {
+            addEvent(eventSlug, eventName, matches);
+        } catch (IOException e) {
+            System.err.println("Could not index " + eventSlug + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the segment of an event whose sets come page by page, see EventWriter.
+     *
+     * @param eventSlug The slug of the event.
+     * @param eventName The event name given for the titles.
+     */
+    public EventWriter writeEvent(String eventSlug, String eventName) throws IOException {
+        return new EventWriter(eventSlug, eventName);
+    }
+
+    /**
+     * Same as writeEvent, printing the error instead of throwing.
+     *
+     * @return The writer, null if its temporary file could not be made.
+     */
+    public EventWriter writeEventQuietly(String eventSlug, String eventName) {
+        try {
+            return writeEvent(eventSlug, eventName);
+        } catch (IOException e) {
+            System.err.println("Could not index " + eventSlug + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The segment of one event, written while its pages are fetched. The sets go to a temporary file
+     * right away, only the tags and the characters with the rows they play in stay in memory.
+     * The index doesn't change before commit, closing the writer without a commit drops the event.
+     *
+     * add and commit print their errors instead of throwing, like addEventQuietly: after an error
+     * the event is just not indexed.
+     */
+    public final class EventWriter implements AutoCloseable {
+        private final String eventSlug;
+        private final String eventName;
+        private final Path rowsFile;
+        private final DataOutputStream rowsOut;
+        // Where each set starts in the rows file, and where the last one ends
+        private int[] rowOffsets = new int[256];
+        private int rowCount;
+        // Tag or character -> sets, sorted so a search can use a binary search
+        private final TreeMap<byte[], BitSet> tags = new TreeMap<>(Arrays::compareUnsigned);
+        private final TreeMap<Integer, BitSet> characters = new TreeMap<>();
+        private boolean failed;
+        private boolean closed;
+
+        private EventWriter(String eventSlug, String eventName) throws IOException {
+            this.eventSlug = eventSlug;
+            this.eventName = eventName;
+            this.rowsFile = Files.createTempFile(dir, "rows-", ".tmp");
+            this.rowsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(rowsFile)));
+        }
+
+        /**
+         * @param matches The streamed sets of one page, in order.
+         */
+        public void add(List<MatchInfo> matches) {
+            if (failed || closed) {
+                return;
+            }
+            try {
+                append(matches);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Writes the segment and puts it in the index, in place of the previous one of the event.
+         */
+        public void commit() {
+            if (failed || closed) {
+                return;
+            }
+            try {
+                finish();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                rowsOut.close();
+            } catch (IOException e) {
+                // Only a temporary file
+            }
+            deleteQuietly(rowsFile);
+        }
+
+        private void append(List<MatchInfo> matches) throws IOException {
+            for (MatchInfo match : matches) {
+                int row = rowCount++;
+                if (rowCount >= rowOffsets.length) {
+                    rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+                }
+                rowOffsets[row] = rowsOut.size();
+                MatchInfoCodec.write(rowsOut, match);
+                for (String tag : new String[] { match.getPlayer1Tag(), match.getPlayer2Tag() }) {
+                    if (tag != null) {
+                        tags.computeIfAbsent(tagBytes(tag), _ -> new BitSet()).set(row);
+                    }
+                }
+                for (int[] ids : new int[][] { match.getPlayer1Characters(), match.getPlayer2Characters() }) {
+                    for (int id : ids) {
+                        characters.computeIfAbsent(id, _ -> new BitSet()).set(row);
+                    }
+                }
+            }
+        }
+
+        private void finish() throws IOException {
+            rowsOut.close();
+            rowOffsets[rowCount] = rowsOut.size();
+
+            String key = eventSlug.toLowerCase(Locale.ROOT);
+            Path file = dir.resolve(ResponseCache.sha256(key).substring(0, 16) + "-" + System.currentTimeMillis()
+                    + EXTENSION);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeSegment(out, this);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file);
+            }
+            close();
+
+            Segment segment = Segment.map(file);
+            Segment previous;
+            synchronized (SetIndex.this) {
+                previous = segments.put(key, segment);
+            }
+            // Can fail while the old file is mapped (Windows), it is deleted the next time the index is opened
+            if (previous != null) {
+                deleteQuietly(previous.file);
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            System.err.println("Could not index " + eventSlug + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * @return The sets matching every filter of the query, event by event in slug order.
+     */
+    public List<Hit> search(Query query) throws IOException {
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments.values());
+        }
+        List<Hit> hits = new ArrayList<>();
+        for (Segment segment : snapshot) {
+            segment.search(query, hits);
+        }
+        return hits;
+    }
+
+    public synchronized int getEventCount() {
+        return segments.size();
+    }
+
+    public synchronized int getSetCount() {
+        int sets = 0;
+        for (Segment segment : segments.values()) {
+            sets += segment.rowCount;
+        }
+        return sets;
+    }
+
+    /**
+     * A set found by a search.
+     */
+    public record Hit(String eventSlug, String eventName, MatchInfo match) {
+    }
+
+    /**
+     * What to look for, every filter that is set has to match.
+     */
+    public static final class Query {
+        private String tag;
+        private boolean tagPrefix;
+        private int[] characters = new int[0];
+        private String event;
+
+        /**
+         * @param tag A player tag, the case doesn't matter. Ending it with * finds every tag starting with it.
+         */
+        public Query setPlayer(String tag) {
+            String lower = tag.strip().toLowerCase(Locale.ROOT);
+            this.tagPrefix = lower.endsWith("*");
+            this.tag = tagPrefix ? lower.substring(0, lower.length() - 1) : lower;
+            return this;
+        }
+
+        /**
+         * @param characterIds One character (played by either player), or two for "first vs second".
+         */
+        public Query setCharacters(int... characterIds) {
+            if (characterIds.length > 2) {
+                throw new IllegalArgumentException("At most two characters, one for each player");
+            }
+            this.characters = characterIds.clone();
+            return this;
+        }
+
+        /**
+         * @param event A part of the event slug or name, the case doesn't matter.
+         */
+        public Query setEvent(String event) {
+            this.event = event.strip().toLowerCase(Locale.ROOT);
+            return this;
+        }
+    }
+
+    private static void writeSegment(DataOutputStream out, EventWriter event) throws IOException {
+        out.writeInt(MAGIC);
+        writeBytes(out, event.eventSlug.getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, event.eventName.getBytes(StandardCharsets.UTF_8));
+        out.writeInt(event.rowCount);
+        for (int row = 0; row <= event.rowCount; row++) {
+            out.writeInt(event.rowOffsets[row]);
+        }
+        // The sets, copied from the rows file
+        out.writeInt(event.rowOffsets[event.rowCount]);
+        Files.copy(event.rowsFile, out);
+
+        TreeMap<byte[], BitSet> tags = event.tags;
+        TreeMap<Integer, BitSet> characters = event.characters;
+        List<BitSet> postings = new ArrayList<>();
+        int postingOffset = 0;
+        out.writeInt(tags.size());
+        int tagOffset = 0;
+        for (Map.Entry<byte[], BitSet> tag : tags.entrySet()) {
+            out.writeInt(tagOffset);
+            out.writeInt(tag.getKey().length);
+            out.writeInt(postingOffset);
+            out.writeInt(tag.getValue().cardinality());
+            tagOffset += tag.getKey().length;
+            postingOffset += tag.getValue().cardinality();
+            postings.add(tag.getValue());
+        }
+        out.writeInt(tagOffset);
+        for (byte[] tag : tags.keySet()) {
+            out.write(tag);
+        }
+
+        out.writeInt(characters.size());
+        for (Map.Entry<Integer, BitSet> character : characters.entrySet()) {
+            out.writeInt(character.getKey());
+            out.writeInt(postingOffset);
+            out.writeInt(character.getValue().cardinality());
+            postingOffset += character.getValue().cardinality();
+            postings.add(character.getValue());
+        }
+
+        out.writeInt(postingOffset);
+        for (BitSet rowsOfKey : postings) {
+            for (int row = rowsOfKey.nextSetBit(0); row >= 0; row = rowsOfKey.nextSetBit(row + 1)) {
+                out.writeInt(row);
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] tagBytes(String tag) {
+        return tag.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still mapped, the next open deletes it
+        }
+    }
+
+    /**
+     * One mapped segment file, the positions of its parts are read once when it is mapped.
+     */
+    private static final class Segment {
+        private static final int TAG_ENTRY_BYTES = 16;
+        private static final int CHARACTER_ENTRY_BYTES = 12;
+
+        private final Path file;
+        private final ByteBuffer buffer;
+        private final String eventSlug;
+        private final String eventName;
+        private final int rowCount;
+        private final int rowOffsetsStart;
+        private final int rowsStart;
+        private final int tagCount;
+        private final int tagEntriesStart;
+        private final int tagBytesStart;
+        private final int characterCount;
+        private final int characterEntriesStart;
+        private final int postingsStart;
+
+        private Segment(Path file, ByteBuffer buffer) throws IOException {
+            this.file = file;
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an index segment");
+            }
+            int position = 4;
+            eventSlug = readString(position);
+            position += 4 + buffer.getInt(position);
+            eventName = readString(position);
+            position += 4 + buffer.getInt(position);
+            rowCount = buffer.getInt(position);
+            rowOffsetsStart = position + 4;
+            position = rowOffsetsStart + (rowCount + 1) * 4;
+            rowsStart = position + 4;
+            position = rowsStart + buffer.getInt(position);
+            tagCount = buffer.getInt(position);
+            tagEntriesStart = position + 4;
+            position = tagEntriesStart + tagCount * TAG_ENTRY_BYTES;
+            tagBytesStart = position + 4;
+            position = tagBytesStart + buffer.getInt(position);
+            characterCount = buffer.getInt(position);
+            characterEntriesStart = position + 4;
+            position = characterEntriesStart + characterCount * CHARACTER_ENTRY_BYTES;
+            postingsStart = position + 4;
+        }
+
+        private static Segment map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Segment(file, buffer);
+            }
+        }
+
+        private void search(Query query, List<Hit> hits) throws IOException {
+            if (query.event != null && !eventSlug.toLowerCase(Locale.ROOT).contains(query.event)
+                    && !eventName.toLowerCase(Locale.ROOT).contains(query.event)) {
+                return;
+            }
+
+            // Sets that can match, null is every set
+            BitSet candidates = null;
+            if (query.tag != null) {
+                candidates = tagRows(tagBytes(query.tag), query.tagPrefix);
+            }
+            for (int character : query.characters) {
+                BitSet rows = characterRows(character);
+                if (candidates == null) {
+                    candidates = rows;
+                } else {
+                    candidates.and(rows);
+                }
+            }
+            if (candidates == null) {
+                candidates = new BitSet(rowCount);
+                candidates.set(0, rowCount);
+            }
+
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                MatchInfo match = readRow(row);
+                // The postings say the tag and the characters are in the set, not who played what
+                if (matchesCharacters(match, query.characters)) {
+                    hits.add(new Hit(eventSlug, eventName, match));
+                }
+            }
+        }
+
+        private static boolean matchesCharacters(MatchInfo match, int[] characters) {
+            if (characters.length < 2) {
+                return true;
+            }
+            int[] player1 = match.getPlayer1Characters();
+            int[] player2 = match.getPlayer2Characters();
+            return (contains(player1, characters[0]) && contains(player2, characters[1]))
+                    || (contains(player1, characters[1]) && contains(player2, characters[0]));
+        }
+
+        private static boolean contains(int[] ids, int id) {
+            for (int value : ids) {
+                if (value == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private BitSet tagRows(byte[] tag, boolean prefix) {
+            BitSet rows = new BitSet(rowCount);
+            // First tag >= the searched one, then every tag that starts with it (or only the equal one)
+            int low = 0;
+            int high = tagCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareTag(middle, tag, false) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int entry = low; entry < tagCount && compareTag(entry, tag, prefix) == 0; entry++) {
+                int entryStart = tagEntriesStart + entry * TAG_ENTRY_BYTES;
+                addPostings(rows, buffer.getInt(entryStart + 8), buffer.getInt(entryStart + 12));
+            }
+            return rows;
+        }
+
+        // With prefix, a tag starting with the searched one compares as equal
+        private int compareTag(int entry, byte[] tag, boolean prefix) {
+            int entryStart = tagEntriesStart + entry * TAG_ENTRY_BYTES;
+            int start = tagBytesStart + buffer.getInt(entryStart);
+            int length = buffer.getInt(entryStart + 4);
+            int compared = prefix ? Math.min(length, tag.length) : length;
+            for (int i = 0; i < Math.min(compared, tag.length); i++) {
+                int difference = (buffer.get(start + i) & 0xFF) - (tag[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return prefix && length >= tag.length ? 0 : Integer.compare(length, tag.length);
+        }
+
+        private BitSet characterRows(int character) {
+            BitSet rows = new BitSet(rowCount);
+            int low = 0;
+            int high = characterCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entryStart = characterEntriesStart + middle * CHARACTER_ENTRY_BYTES;
+                int id = buffer.getInt(entryStart);
+                if (id < character) {
+                    low = middle + 1;
+                } else if (id > character) {
+                    high = middle - 1;
+                } else {
+                    addPostings(rows, buffer.getInt(entryStart + 4), buffer.getInt(entryStart + 8));
+                    break;
+                }
+            }
+            return rows;
+        }
+
+        private void addPostings(BitSet rows, int offset, int count) {
+            for (int i = 0; i < count; i++) {
+                rows.set(buffer.getInt(postingsStart + (offset + i) * 4));
+            }
+        }
+
+        private MatchInfo readRow(int row) throws IOException {
+            int start = buffer.getInt(rowOffsetsStart + row * 4);
+            int end = buffer.getInt(rowOffsetsStart + (row + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(rowsStart + start, bytes);
+            return MatchInfoCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+
+        private String readString(int position) {
+            byte[] bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
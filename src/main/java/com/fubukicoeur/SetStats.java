@@ -0,0 +1,337 @@
+package com.fubukicoeur;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Character pick rates, head-to-heads and sets per phase of an event or of a whole season.
+ *
+ * The sets are counted in parallel (one accumulator per fork/join task, merged at the end). The characters
+ * are counted in an int array per game indexed by CharacterRegistry.ordinal, no boxing and no map lookup per pick.
+ *
+ * The API doesn't give us who won a set, so a head-to-head is how many sets two players played.
+ */
+public final class SetStats {
+    // One set is not a head-to-head
+    public static final int MIN_HEAD_TO_HEAD_SETS = 2;
+    // getPhase is empty when the event has only one phase
+    public static final String SINGLE_PHASE = "Bracket";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final int sets;
+    private final int reportedPlayers;
+    private final List<CharacterPicks> characters;
+    private final List<HeadToHead> headToHeads;
+    private final List<PhaseSets> phases;
+
+    /**
+     * @param id The start.gg id of the character.
+     * @param name Its name.
+     * @param picks In how many sets a player played it.
+     * @param rate picks / the number of players (two per set) whose characters were reported.
+     */
+    public record CharacterPicks(int id, String name, int picks, double rate) {
+    }
+
+    /**
+     * @param player1 A tag, as written in the first set they played.
+     * @param player2 The other tag.
+     * @param sets How many sets they played against each other.
+     */
+    public record HeadToHead(String player1, String player2, int sets) {
+    }
+
+    /**
+     * @param phase "Pools", "Top 64"... or SINGLE_PHASE.
+     * @param sets How many sets were played in this phase.
+     */
+    public record PhaseSets(String phase, int sets) {
+    }
+
+    private SetStats(Accumulator accumulator) {
+        sets = accumulator.sets;
+        reportedPlayers = accumulator.reportedPlayers;
+
+        characters = new ArrayList<>();
+        for (Map.Entry<CharacterRegistry, int[]> game : accumulator.picks.entrySet()) {
+            CharacterRegistry registry = game.getKey();
+            int[] picks = game.getValue();
+            for (int ordinal = 0; ordinal < picks.length; ordinal++) {
+                if (picks[ordinal] > 0) {
+                    int id = registry.idAt(ordinal);
+                    characters.add(new CharacterPicks(id, registry.name(id), picks[ordinal], rate(picks[ordinal])));
+                }
+            }
+        }
+        for (Map.Entry<Integer, int[]> unknown : accumulator.unknownPicks.entrySet()) {
+            characters.add(new CharacterPicks(unknown.getKey(), CharacterRegistry.UNKNOWN, unknown.getValue()[0],
+                    rate(unknown.getValue()[0])));
+        }
+        characters.sort(Comparator.comparingInt(CharacterPicks::picks).reversed()
+                .thenComparingInt(CharacterPicks::id));
+
+        headToHeads = new ArrayList<>();
+        for (PairCount pair : accumulator.pairs.values()) {
+            if (pair.sets >= MIN_HEAD_TO_HEAD_SETS) {
+                headToHeads.add(new HeadToHead(pair.player1, pair.player2, pair.sets));
+            }
+        }
+        headToHeads.sort(Comparator.comparingInt(HeadToHead::sets).reversed()
+                .thenComparing(HeadToHead::player1, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(HeadToHead::player2, String.CASE_INSENSITIVE_ORDER));
+
+        phases = new ArrayList<>();
+        for (Map.Entry<String, int[]> phase : accumulator.phases.entrySet()) {
+            phases.add(new PhaseSets(phase.getKey(), phase.getValue()[0]));
+        }
+        phases.sort(Comparator.comparingInt(PhaseSets::sets).reversed().thenComparing(PhaseSets::phase));
+    }
+
+    /**
+     * Counts every set, in parallel.
+     *
+     * @param matches The sets of one or several events.
+     */
+    public static SetStats compute(Collection<MatchInfo> matches) {
+        return new SetStats(matches.parallelStream().collect(Accumulator::new, Accumulator::add, Accumulator::merge));
+    }
+
+    /**
+     * Same as the other compute, for a season kept in a MatchStore. Each task rebuilds the MatchInfo of its rows
+     * one at a time, they are garbage right after.
+     */
+    public static SetStats compute(MatchStore matches) {
+        return new SetStats(IntStream.range(0, matches.size()).parallel().mapToObj(matches::get)
+                .collect(Accumulator::new, Accumulator::add, Accumulator::merge));
+    }
+
+    public int getSetCount() {
+        return sets;
+    }
+
+    /**
+     * @return The characters played at least once, the most played first.
+     */
+    public List<CharacterPicks> getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return The players who played at least MIN_HEAD_TO_HEAD_SETS sets against each other, the most sets first.
+     */
+    public List<HeadToHead> getHeadToHeads() {
+        return headToHeads;
+    }
+
+    /**
+     * @return The sets of each phase, the biggest phase first.
+     */
+    public List<PhaseSets> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Writes the stats to a file.
+     *
+     * @param format CSV (one table, the first column says what the row is) or JSON.
+     */
+    public void write(Path output, OutputFormat format) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            write(writer, format);
+        }
+    }
+
+    /**
+     * Same as the other write, to any writer.
+     */
+    public void write(Writer writer, OutputFormat format) throws IOException {
+        switch (format) {
+            case CSV -> writeCsv(writer);
+            case JSON -> writeJson(writer);
+            case TXT -> throw new IllegalArgumentException("The stats are written in CSV or JSON");
+        }
+    }
+
+    private void writeCsv(Writer writer) throws IOException {
+        String newLine = System.lineSeparator();
+        StringBuilder csv = new StringBuilder(4096);
+        csv.append("stat,key,id,count,rate").append(newLine);
+        csv.append("sets,,,").append(sets).append(',').append(newLine);
+        for (CharacterPicks character : characters) {
+            csv.append("character,").append(TitleWriter.csv(character.name())).append(',').append(character.id())
+                    .append(',').append(character.picks()).append(',')
+                    .append(String.format(Locale.ROOT, "%.4f", character.rate())).append(newLine);
+        }
+        for (HeadToHead headToHead : headToHeads) {
+            csv.append("head_to_head,").append(TitleWriter.csv(headToHead.player1() + " vs " + headToHead.player2()))
+                    .append(",,").append(headToHead.sets()).append(',').append(newLine);
+        }
+        for (PhaseSets phase : phases) {
+            csv.append("phase,").append(TitleWriter.csv(phase.phase())).append(",,").append(phase.sets()).append(',')
+                    .append(String.format(Locale.ROOT, "%.4f", sets == 0 ? 0.0 : (double) phase.sets() / sets))
+                    .append(newLine);
+        }
+        writer.append(csv);
+        writer.flush();
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        JsonGenerator json = jsonFactory.createGenerator(writer).useDefaultPrettyPrinter();
+        json.writeStartObject();
+        json.writeNumberField("sets", sets);
+        json.writeNumberField("reportedPlayers", reportedPlayers);
+        json.writeArrayFieldStart("characters");
+        for (CharacterPicks character : characters) {
+            json.writeStartObject();
+            json.writeStringField("id", Integer.toString(character.id()));
+            json.writeStringField("name", character.name());
+            json.writeNumberField("picks", character.picks());
+            json.writeNumberField("rate", character.rate());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeArrayFieldStart("headToHeads");
+        for (HeadToHead headToHead : headToHeads) {
+            json.writeStartObject();
+            json.writeStringField("player1", headToHead.player1());
+            json.writeStringField("player2", headToHead.player2());
+            json.writeNumberField("sets", headToHead.sets());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeArrayFieldStart("phases");
+        for (PhaseSets phase : phases) {
+            json.writeStartObject();
+            json.writeStringField("phase", phase.phase());
+            json.writeNumberField("sets", phase.sets());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.flush();
+        writer.write(System.lineSeparator());
+    }
+
+    private double rate(int picks) {
+        return reportedPlayers == 0 ? 0.0 : (double) picks / reportedPlayers;
+    }
+
+    /**
+     * The counts of one fork/join task. Not thread safe, each task has its own.
+     */
+    private static final class Accumulator {
+        // Almost always one game, a registry is compared by identity (there is one per game)
+        private final Map<CharacterRegistry, int[]> picks = new IdentityHashMap<>(2);
+        // Ids not in their registry ("Unknown"), rare
+        private final Map<Integer, int[]> unknownPicks = new HashMap<>();
+        // Lower case "tag1\ntag2", the two tags sorted
+        private final Map<String, PairCount> pairs = new HashMap<>();
+        private final Map<String, int[]> phases = new HashMap<>();
+        private int sets;
+        private int reportedPlayers;
+
+        private CharacterRegistry lastRegistry;
+        private int[] lastPicks;
+        private final StringBuilder phase = new StringBuilder(16);
+
+        private void add(MatchInfo match) {
+            sets++;
+            CharacterRegistry registry = match.getCharacters();
+            if (registry != lastRegistry) {
+                lastRegistry = registry;
+                lastPicks = picks.computeIfAbsent(registry, r -> new int[r.size()]);
+            }
+            addPicks(registry, match.getPlayer1Characters());
+            addPicks(registry, match.getPlayer2Characters());
+
+            String tag1 = match.getPlayer1Tag();
+            String tag2 = match.getPlayer2Tag();
+            if (tag1 != null && tag2 != null) {
+                String lower1 = tag1.toLowerCase(Locale.ROOT);
+                String lower2 = tag2.toLowerCase(Locale.ROOT);
+                boolean ordered = lower1.compareTo(lower2) <= 0;
+                String key = ordered ? lower1 + '\n' + lower2 : lower2 + '\n' + lower1;
+                PairCount pair = pairs.get(key);
+                if (pair == null) {
+                    pair = ordered ? new PairCount(tag1, tag2) : new PairCount(tag2, tag1);
+                    pairs.put(key, pair);
+                }
+                pair.sets++;
+            }
+
+            phase.setLength(0);
+            match.appendPhase(phase);
+            String phaseName = phase.length() == 0 ? SINGLE_PHASE : phase.toString();
+            phases.computeIfAbsent(phaseName, _ -> new int[1])[0]++;
+        }
+
+        // A character counts once per player and set, whatever the number of games
+        private void addPicks(CharacterRegistry registry, int[] ids) {
+            if (ids.length == 0) {
+                return;
+            }
+            reportedPlayers++;
+            for (int id : ids) {
+                int ordinal = registry.ordinal(id);
+                if (ordinal >= 0) {
+                    lastPicks[ordinal]++;
+                } else {
+                    unknownPicks.computeIfAbsent(id, _ -> new int[1])[0]++;
+                }
+            }
+        }
+
+        private void merge(Accumulator other) {
+            sets += other.sets;
+            reportedPlayers += other.reportedPlayers;
+            other.picks.forEach((registry, counts) -> {
+                int[] mine = picks.get(registry);
+                if (mine == null) {
+                    picks.put(registry, counts);
+                } else {
+                    for (int i = 0; i < counts.length; i++) {
+                        mine[i] += counts[i];
+                    }
+                }
+            });
+            other.unknownPicks.forEach((id, count) -> unknownPicks.computeIfAbsent(id, _ -> new int[1])[0] += count[0]);
+            other.pairs.forEach((key, pair) -> {
+                PairCount mine = pairs.putIfAbsent(key, pair);
+                if (mine != null) {
+                    mine.sets += pair.sets;
+                }
+            });
+            other.phases.forEach((name, count) -> phases.computeIfAbsent(name, _ -> new int[1])[0] += count[0]);
+            // The registry of the last set may have a new array now
+            lastRegistry = null;
+        }
+    }
+
+    private static final class PairCount {
+        private final String player1;
+        private final String player2;
+        private int sets;
+
+        private PairCount(String player1, String player2) {
+            this.player1 = player1;
+            this.player2 = player2;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.fubukicoeur;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watch mode for a live event: the first poll writes every streamed set, the next ones
+ * only ask the API for the sets updated since the last poll and append the new or changed titles.
+ */
+public class SetWatcher {
+    // Sets updated right when we polled could be missed, so each poll looks a bit before the last one.
+    // It also covers a small difference between our clock and the start.gg clock.
+    private static final long OVERLAP_SECONDS = 30;
+
+    private final ApiCalls api;
+    private final String eventName;
+    private final Path output;
+    // Set id (or the title if the set has no id) -> last title written for it
+    private final Map<String, String> emittedTitles = new HashMap<>();
+    private long lastPollEpochSeconds = -1;
+    private TitleTemplate template = TitleTemplate.DEFAULT;
+
+    /**
+     * @param api The API calls for the watched event, the watcher turns off its cache and checkpoints.
+     * @param eventName The event name put at the start of each title.
+     * @param output The file the titles are written to.
+     */
+    public SetWatcher(ApiCalls api, String eventName, Path output) {
+        this.api = api;
+        // The next polls only ask for what changed since the first one started, so the first one
+        // has to be what the API says now, not pages kept from minutes or hours before
+        api.setCache(null);
+        api.setCheckpointDir(null);
+        this.eventName = eventName;
+        this.output = output;
+    }
+
+    /**
+     * @param template The template of the titles, the default one if not set.
+     */
+    public void setTemplate(TitleTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Asks the API for what changed and appends the new titles to the output.
+     *
+     * @param progressCallback Optional callback for the first poll, which fetches the whole event.
+     * @return The number of titles written by this poll.
+     * @throws Exception If an error occurs while fetching the data or writing the file.
+     */
+    public int poll(App.ProgressCallback progressCallback) throws Exception {
+        long pollStart = System.currentTimeMillis() / 1000;
+        boolean firstPoll = lastPollEpochSeconds < 0;
+
+        List<MatchInfo> matches = firstPoll
+                ? api.getAllStreamedSetDetails(progressCallback)
+                : api.getStreamedSetsUpdatedAfter(lastPollEpochSeconds - OVERLAP_SECONDS);
+
+        int written = 0;
+        StandardOpenOption mode = firstPoll ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            for (MatchInfo match : matches) {
+                String title = template.format(eventName, match);
+                String key = match.getSetId() != null ? match.getSetId() : title;
+                if (title.equals(emittedTitles.put(key, title))) {
+                    continue;
+                }
+                writer.write(title);
+                writer.newLine();
+                written++;
+            }
+        }
+
+        lastPollEpochSeconds = pollStart;
+        return written;
+    }
+
+    /**
+     * @return The number of different sets written since the watch started.
+     */
+    public int getWatchedSetCount() {
+        return emittedTitles.size();
+    }
+}
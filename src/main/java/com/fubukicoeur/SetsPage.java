@@ -0,0 +1,16 @@
+package com.fubukicoeur;
+
+import java.util.List;
+
+/**
+ * One parsed page of sets.
+ *
+ * @param totalPages The number of pages of the event, as given by pageInfo.
+ * @param phases The phases used to build the titles of this page.
+ * @param matches The streamed sets of this page, in API order.
+ * @param eventCompleted true if the event was over when the page was fetched, nothing in it can change anymore.
+ * @param setCount The number of sets of the page, streamed or not.
+ */
+public record SetsPage(int totalPages, EventPhases phases, List<MatchInfo> matches, boolean eventCompleted,
+        int setCount) {
+}
@@ -0,0 +1,29 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Turns the body of a sets query response into a SetsPage.
+ */
+public interface SetsPageParser {
+
+    /**
+     * @param body The response body.
+     * @param phases The phases of the event, or null to read them from this response (page 1).
+     * @param eventSlug The slug of the event, only used for error messages.
+     * @return The parsed page.
+     * @throws ApiException If the response contains errors or the event does not exist.
+     */
+    SetsPage parse(InputStream body, EventPhases phases, String eventSlug) throws IOException;
+
+    /**
+     * Parses the response of SetsQuery.coalescedSetsQuery, one page per alias.
+     *
+     * @param pages The number of aliases in the query.
+     * @return The pages, in alias order.
+     * @throws ApiException If the response contains errors, the event does not exist or a page is missing.
+     */
+    List<SetsPage> parsePages(InputStream body, EventPhases phases, String eventSlug, int pages) throws IOException;
+}
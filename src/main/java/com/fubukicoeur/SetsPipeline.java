@@ -0,0 +1,251 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches an event and writes its titles at the same time, instead of keeping every set until the last page.
+ *
+ * The pages go, in page order, through a small bounded queue to a writer thread that appends their lines
+ * to "output.part" with a FileChannel and flushes after each page, so the file can be followed while it grows.
+ * When the queue is full the fetching waits, so the memory used doesn't depend on the size of the event.
+ * Once everything is written the .part file is renamed to the output, which is never half written.
+ *
+ * Works for TXT and CSV, JSON still goes through TitleWriter.
+ */
+public class SetsPipeline {
+    private static final int DEFAULT_QUEUE_CAPACITY = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_EXTENSION = ".part";
+    private static final Batch END = new Batch(0, 0, List.of());
+
+    private final ApiCalls api;
+    private final String eventName;
+    private final Path output;
+    private OutputFormat format = OutputFormat.TXT;
+    private TitleTemplate template = TitleTemplate.DEFAULT;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private PageWrittenListener pageWrittenListener;
+
+    /**
+     * @param api The API calls for the event.
+     * @param eventName The event name put at the start of each title.
+     * @param output The file to write, replaced at the end if it exists.
+     */
+    public SetsPipeline(ApiCalls api, String eventName, Path output) {
+        this.api = api;
+        this.eventName = eventName;
+        this.output = output;
+    }
+
+    /**
+     * @param format TXT (default) or CSV.
+     */
+    public void setFormat(OutputFormat format) {
+        if (format == OutputFormat.JSON) {
+            throw new IllegalArgumentException("The pipeline only writes TXT and CSV");
+        }
+        this.format = format;
+    }
+
+    /**
+     * @param template The template of the titles, the default one if not set.
+     */
+    public void setTemplate(TitleTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * @param queueCapacity How many pages can wait for the writer, at least 1.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param pageWrittenListener Called by the writer thread after each page is flushed, can be null.
+     */
+    public void setPageWrittenListener(PageWrittenListener pageWrittenListener) {
+        this.pageWrittenListener = pageWrittenListener;
+    }
+
+    /**
+     * Told when a page is in the file.
+     */
+    @FunctionalInterface
+    public interface PageWrittenListener {
+        /**
+         * @param page The page just written.
+         * @param totalPages The number of pages of the event.
+         * @param matches The streamed sets of this page.
+         * @param titlesWritten The number of titles written so far.
+         */
+        void onPageWritten(int page, int totalPages, List<MatchInfo> matches, int titlesWritten);
+    }
+
+    /**
+     * Fetches the event and writes the file.
+     *
+     * @param progressCallback Optional callback, called as pages are fetched.
+     * @return The number of titles written.
+     * @throws Exception If the fetching or the writing fails, the output is left as it was then.
+     */
+    public int run(App.ProgressCallback progressCallback) throws Exception {
+        Path part = output.resolveSibling(output.getFileName() + PART_EXTENSION);
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        FutureTask<Integer> writer = new FutureTask<>(() -> writeAll(queue, part));
+        Thread writerThread = Thread.ofVirtual().name("sets-writer").start(writer);
+
+        boolean done = false;
+        try {
+            api.fetchStreamedSetPages(queueCapacity, (page, totalPages, matches) -> {
+                Batch batch = new Batch(page, totalPages, matches);
+                while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (writer.isDone()) {
+                        // The writer failed, its error is the one to show
+                        getUnwrapped(writer);
+                    }
+                }
+            }, progressCallback);
+            queue.put(END);
+            int written = getUnwrapped(writer);
+
+            try {
+                Files.move(part, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            done = true;
+            return written;
+        } finally {
+            if (!done) {
+                writer.cancel(true);
+                writerThread.join();
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + part + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private int writeAll(BlockingQueue<Batch> queue, Path part) throws IOException, InterruptedException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        char[] chars = new char[256];
+        CharBuffer charBuffer = CharBuffer.wrap(chars);
+        int written = 0;
+
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (format == OutputFormat.CSV) {
+                line.append(TitleWriter.CSV_HEADER).append(System.lineSeparator());
+            }
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END) {
+                    break;
+                }
+                FetchEvents.OutputWrite writeEvent = new FetchEvents.OutputWrite();
+                writeEvent.begin();
+                long writeStart = System.nanoTime();
+                for (MatchInfo match : batch.matches()) {
+                    TitleWriter.appendLine(line, eventName, match, format, template);
+                    if (chars.length < line.length()) {
+                        chars = new char[line.length() * 2];
+                        charBuffer = CharBuffer.wrap(chars);
+                    }
+                    line.getChars(0, line.length(), chars, 0);
+                    charBuffer.clear().limit(line.length());
+                    encode(encoder, charBuffer, bytes, channel);
+                    line.setLength(0);
+                    written++;
+                }
+                flush(bytes, channel);
+                writeEvent.end();
+                if (writeEvent.shouldCommit()) {
+                    writeEvent.file = output.toString();
+                    writeEvent.page = batch.page();
+                    writeEvent.titles = batch.matches().size();
+                    writeEvent.commit();
+                }
+                FetchMetrics.get().written(System.nanoTime() - writeStart, batch.matches().size());
+                if (pageWrittenListener != null) {
+                    pageWrittenListener.onPageWritten(batch.page(), batch.totalPages(), batch.matches(), written);
+                }
+            }
+            // An event without streamed sets still has its CSV header
+            if (line.length() > 0) {
+                charBuffer = CharBuffer.wrap(line);
+                encode(encoder, charBuffer, bytes, channel);
+            }
+            flush(bytes, channel);
+            channel.force(true);
+        }
+        return written;
+    }
+
+    private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer bytes, FileChannel channel)
+            throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                flush(bytes, channel);
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            flush(bytes, channel);
+        }
+    }
+
+    private static void flush(ByteBuffer bytes, FileChannel channel) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private static <T> T getUnwrapped(FutureTask<T> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The streamed sets of one page, on their way to the writer.
+     */
+    private record Batch(int page, int totalPages, List<MatchInfo> matches) {
+    }
+}
@@ -0,0 +1,266 @@
+package com.fubukicoeur;
+
+/**
+ * The GraphQL queries used to fetch the sets of an event, and how many sets we can ask for per page.
+ *
+ * start.gg refuses a request that could return more than 1000 objects, so perPage is computed
+ * from an estimate of the objects one set costs in SETS_QUERY instead of being hard coded.
+ */
+public final class SetsQuery {
+    public static final int COMPLEXITY_LIMIT = 1000;
+    public static final int MAX_PER_PAGE = 100;
+    public static final int MIN_PER_PAGE = 5;
+    /** Value of the event "state" field once the event is over (ActivityState COMPLETED). */
+    public static final String EVENT_COMPLETED = "COMPLETED";
+
+    /**
+     * Only what MatchInfo needs: stream is only checked for null and the phase is only used by its id.
+     * The event state tells if the pages can stay in the cache for good, it comes before the sets
+     * so the streaming parser knows it for every page of a coalesced response.
+     */
+    public static final String SETS_QUERY = """
+            query($eventSlug: String!, $page: Int!, $perPage: Int!) {
+              event(slug: $eventSlug) {
+                state
+                sets(page: $page, perPage: $perPage) {
+                  pageInfo {
+                    totalPages
+                  }
+                  nodes {
+                    id
+                    fullRoundText
+                    stream {
+                      id
+                    }
+                    phaseGroup {
+                      phase {
+                        id
+                      }
+                    }
+                    slots {
+                      entrant {
+                        id
+                        participants {
+                          player {
+                            gamerTag
+                          }
+                        }
+                      }
+                    }
+                    games {
+                      selections {
+                        selectionType
+                        selectionValue
+                        entrant {
+                          id
+                        }
+                      }
+                    }
+                  }
+                }
+              }
+            }
+            """;
+
+    /**
+     * SETS_QUERY with only the sets updated since a timestamp (in seconds), for the watch mode.
+     */
+    public static final String UPDATED_SETS_QUERY = SETS_QUERY
+            .replace("$perPage: Int!)", "$perPage: Int!, $updatedAfter: Timestamp!)")
+            .replace("sets(page: $page, perPage: $perPage)",
+                    "sets(page: $page, perPage: $perPage, filters: { updatedAfter: $updatedAfter })");
+
+    /**
+     * Asked once per event, the phases don't change from one page to the next.
+     * The game is asked here too, it tells which characters the selections are.
+     */
+    public static final String PHASES_QUERY = """
+            query($eventSlug: String!) {
+              event(slug: $eventSlug) {
+                id
+                videogame {
+                  id
+                }
+                phases {
+                  id
+                  numSeeds
+                  name
+                }
+              }
+            }
+            """;
+
+    /**
+     * The characters of a game, asked once and kept on disk by CharacterRegistry.
+     */
+    public static final String CHARACTERS_QUERY = """
+            query($videogameId: ID!) {
+              videogame(id: $videogameId) {
+                id
+                characters {
+                  id
+                  name
+                }
+              }
+            }
+            """;
+
+    /**
+     * The events of a tournament, for the batch mode.
+     */
+    public static final String TOURNAMENT_EVENTS_QUERY = """
+            query($tournamentSlug: String!) {
+              tournament(slug: $tournamentSlug) {
+                name
+                events {
+                  slug
+                  name
+                }
+              }
+            }
+            """;
+
+    /** The most pages asked in one request, see coalescedSetsQuery. */
+    public static final int MAX_PAGES_PER_REQUEST = 10;
+    private static final String PAGE_ALIAS = "p";
+    // The { ... } after "sets(...)" in SETS_QUERY, shared with the coalesced queries
+    private static final String SETS_SELECTION = setsSelection();
+    private static final String[] COALESCED_QUERIES = new String[MAX_PAGES_PER_REQUEST + 1];
+
+    // What we expect in an average set, used for the estimate
+    private static final int SLOTS_PER_SET = 2;
+    private static final int PARTICIPANTS_PER_ENTRANT = 1;
+    private static final int GAMES_PER_SET = 3;
+    private static final int SELECTIONS_PER_GAME = 2;
+
+    // The perPage we fell back to after the API refused a bigger one, 0 until that happens
+    private static volatile int learnedPerPage = 0;
+
+    private SetsQuery() {
+    }
+
+    /**
+     * @return The estimated number of objects returned for one set node of SETS_QUERY.
+     */
+    public static int estimatedObjectsPerSet() {
+        int participant = 1 + 1; // participant, player
+        int slot = 1 + 1 + PARTICIPANTS_PER_ENTRANT * participant; // slot, entrant, participants
+        int game = 1 + SELECTIONS_PER_GAME * (1 + 1); // game, selection, entrant
+        return 1 // set
+                + 1 // stream
+                + 2 // phaseGroup, phase
+                + SLOTS_PER_SET * slot
+                + GAMES_PER_SET * game;
+    }
+
+    /**
+     * SETS_QUERY for several pages in one request, each page is the sets connection under an alias:
+     * "p1: sets(page: $page1, perPage: $perPage) {...} p2: sets(page: $page2, ...)".
+     * The event of the response has "p1", "p2"... instead of "sets", see aliasIndex.
+     *
+     * @param pages The number of pages, 2 to MAX_PAGES_PER_REQUEST.
+     * @return The query, its variables are eventSlug, perPage and page1 to pageN.
+     */
+    public static String coalescedSetsQuery(int pages) {
+        if (pages < 2 || pages > MAX_PAGES_PER_REQUEST) {
+            throw new IllegalArgumentException("Between 2 and " + MAX_PAGES_PER_REQUEST + " pages: " + pages);
+        }
+        synchronized (COALESCED_QUERIES) {
+            if (COALESCED_QUERIES[pages] == null) {
+                StringBuilder query = new StringBuilder("query($eventSlug: String!, $perPage: Int!");
+                for (int i = 1; i <= pages; i++) {
+                    query.append(", $page").append(i).append(": Int!");
+                }
+                query.append(") {\n  event(slug: $eventSlug) {\n    state\n");
+                for (int i = 1; i <= pages; i++) {
+                    query.append("    ").append(alias(i)).append(": sets(page: $page").append(i)
+                            .append(", perPage: $perPage) ").append(SETS_SELECTION).append('\n');
+                }
+                query.append("  }\n}\n");
+                COALESCED_QUERIES[pages] = query.toString();
+            }
+            return COALESCED_QUERIES[pages];
+        }
+    }
+
+    /**
+     * @return The alias of a page in coalescedSetsQuery, "p1" for the first one.
+     */
+    public static String alias(int index) {
+        return PAGE_ALIAS + index;
+    }
+
+    /**
+     * @param field A field of the event in a response to coalescedSetsQuery.
+     * @return The position of the alias in the query, 1 for "p1", or -1 if the field is not an alias.
+     */
+    public static int aliasIndex(String field) {
+        if (field.length() < 2 || !field.startsWith(PAGE_ALIAS)) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = PAGE_ALIAS.length(); i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9' || index > MAX_PAGES_PER_REQUEST) {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index >= 1 ? index : -1;
+    }
+
+    /**
+     * How many pages fit in one coalesced request under COMPLEXITY_LIMIT, by the estimate.
+     * The event is counted once, each page costs its sets plus its sets/pageInfo object.
+     * With perPage() a page already fills the limit, so this is more than 1 only for smaller pages.
+     *
+     * @param perPage The page size.
+     * @return The number of pages, at least 1 and at most MAX_PAGES_PER_REQUEST.
+     */
+    public static int pagesPerRequest(int perPage) {
+        int pageObjects = 1 + perPage * estimatedObjectsPerSet();
+        return Math.max(1, Math.min(MAX_PAGES_PER_REQUEST, (COMPLEXITY_LIMIT - 1) / pageObjects));
+    }
+
+    private static String setsSelection() {
+        int start = SETS_QUERY.indexOf('{', SETS_QUERY.indexOf("sets("));
+        int depth = 0;
+        for (int i = start; i < SETS_QUERY.length(); i++) {
+            char c = SETS_QUERY.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return SETS_QUERY.substring(start, i + 1);
+            }
+        }
+        throw new IllegalStateException("SETS_QUERY has no sets selection");
+    }
+
+    /**
+     * @return The perPage to use for the next event, from the estimate or from what the API told us before.
+     */
+    public static int perPage() {
+        int learned = learnedPerPage;
+        if (learned > 0) {
+            return learned;
+        }
+        // 2 objects for event and sets/pageInfo
+        int estimate = (COMPLEXITY_LIMIT - 2) / estimatedObjectsPerSet();
+        return Math.max(MIN_PER_PAGE, Math.min(MAX_PER_PAGE, estimate));
+    }
+
+    /**
+     * Called when the API refused a page because of its complexity.
+     *
+     * @param refusedPerPage The perPage that was refused.
+     * @return The smaller perPage to try, or -1 if we can't go lower.
+     */
+    public static int backOff(int refusedPerPage) {
+        if (refusedPerPage <= MIN_PER_PAGE) {
+            return -1;
+        }
+        int next = Math.max(MIN_PER_PAGE, refusedPerPage * 3 / 4);
+        learnedPerPage = next;
+        return next;
+    }
+}
@@ -0,0 +1,229 @@
+package com.fubukicoeur;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The titles of the window's results table, one row per streamed set.
+ *
+ * The worker thread gives whole pages with addLater. The rows wait in a pending list and one invokeLater
+ * adds everything that is pending at once, so the EDT gets one insert event per burst of pages
+ * and never one per row. The titles are formatted on the worker thread too, the EDT only copies references.
+ *
+ * Each run gets a number from clear(), the pages a worker of an older run still gives afterwards are dropped.
+ *
+ * The titles can be edited in the table, the characters left column follows the YouTube limit.
+ * The counts of the summary are kept up to date row by row, so it never has to look at every row.
+ */
+public class SetsTableModel extends AbstractTableModel {
+    public static final int NUMBER_COLUMN = 0;
+    public static final int TITLE_COLUMN = 1;
+    public static final int CHARS_LEFT_COLUMN = 2;
+    private static final String[] COLUMN_NAMES = { "#", "Title", "Chars left" };
+
+    // Only touched on the EDT
+    private final List<Row> rows = new ArrayList<>();
+    // Filled by the worker thread, guarded by itself
+    private final List<Row> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    // The run whose rows are shown, guarded by pending
+    private int run;
+    // Only touched on the EDT, like rows
+    private int editedCount;
+    private int overLimitCount;
+
+    /**
+     * Adds the titles of some matches, from any thread. They show up the next time the EDT is free.
+     *
+     * @param run The number clear() gave when the run started, the matches are dropped if another run started since.
+     * @param eventName The event name for the titles.
+     * @param matches The matches, usually one page.
+     * @param template The template of the titles.
+     */
+    public void addLater(int run, String eventName, List<MatchInfo> matches, TitleTemplate template) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        List<Row> newRows = new ArrayList<>(matches.size());
+        for (MatchInfo match : matches) {
+            newRows.add(new Row(match, template.format(eventName, match)));
+        }
+
+        boolean schedule;
+        synchronized (pending) {
+            if (run != this.run) {
+                return;
+            }
+            pending.addAll(newRows);
+            schedule = !flushScheduled;
+            flushScheduled = true;
+        }
+        if (schedule) {
+            SwingUtilities.invokeLater(this::flushPending);
+        }
+    }
+
+    private void flushPending() {
+        List<Row> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        for (Row row : batch) {
+            if (row.isOverLimit()) {
+                overLimitCount++;
+            }
+        }
+        rows.addAll(batch);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    /**
+     * Removes every row, on the EDT.
+     *
+     * @return The number of the new run, for addLater.
+     */
+    public int clear() {
+        int newRun;
+        synchronized (pending) {
+            pending.clear();
+            newRun = ++run;
+        }
+        rows.clear();
+        editedCount = 0;
+        overLimitCount = 0;
+        fireTableDataChanged();
+        return newRun;
+    }
+
+    /**
+     * @return The title of a row, edited or not.
+     */
+    public String getTitle(int row) {
+        return rows.get(row).title;
+    }
+
+    public MatchInfo getMatch(int row) {
+        return rows.get(row).match;
+    }
+
+    /**
+     * @return Every title in table order, edited ones included.
+     */
+    public List<String> getTitles() {
+        List<String> titles = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            titles.add(row.title);
+        }
+        return titles;
+    }
+
+    /**
+     * Puts the generated title back in a row.
+     */
+    public void resetTitle(int row) {
+        Row r = rows.get(row);
+        setTitle(r, r.generatedTitle);
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * @return How many titles were changed by hand.
+     */
+    public int getEditedCount() {
+        return editedCount;
+    }
+
+    /**
+     * @return How many titles are longer than the YouTube limit.
+     */
+    public int getOverLimitCount() {
+        return overLimitCount;
+    }
+
+    // Changes the title of a row and the counts with it
+    private void setTitle(Row row, String title) {
+        editedCount -= row.isEdited() ? 1 : 0;
+        overLimitCount -= row.isOverLimit() ? 1 : 0;
+        row.title = title;
+        editedCount += row.isEdited() ? 1 : 0;
+        overLimitCount += row.isOverLimit() ? 1 : 0;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == TITLE_COLUMN ? String.class : Integer.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == TITLE_COLUMN;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Row r = rows.get(row);
+        return switch (column) {
+            case NUMBER_COLUMN -> row + 1;
+            case TITLE_COLUMN -> r.title;
+            case CHARS_LEFT_COLUMN -> TitleTemplate.YOUTUBE_MAX_LENGTH - r.title.length();
+            default -> throw new IndexOutOfBoundsException(column);
+        };
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column != TITLE_COLUMN) {
+            return;
+        }
+        setTitle(rows.get(row), String.valueOf(value).strip());
+        // The characters left change with it
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * A match with the title we generated and the one shown, which can be edited.
+     */
+    private static final class Row {
+        private final MatchInfo match;
+        private final String generatedTitle;
+        private String title;
+
+        private Row(MatchInfo match, String title) {
+            this.match = match;
+            this.generatedTitle = title;
+            this.title = title;
+        }
+
+        private boolean isEdited() {
+            return !title.equals(generatedTitle);
+        }
+
+        private boolean isOverLimit() {
+            return title.length() > TitleTemplate.YOUTUBE_MAX_LENGTH;
+        }
+    }
+}
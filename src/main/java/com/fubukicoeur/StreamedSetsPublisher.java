@@ -0,0 +1,188 @@
+package com.fubukicoeur;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The streamed sets of an event as a Flow.Publisher, for callers that want each set when it's there
+ * instead of waiting for the full list of getAllStreamedSetDetails (an overlay for example).
+ *
+ * Each subscriber gets its own fetch of the event, started by its first request. Pages are only fetched
+ * as fast as the subscriber asks for sets: once maxPagesAhead pages wait for demand, no other page is asked.
+ * Cancelling stops the fetch right away, the requests in flight are interrupted.
+ *
+ * The sets come in API order. onNext is called from the fetching threads, one call at a time.
+ */
+public class StreamedSetsPublisher implements Flow.Publisher<MatchInfo> {
+    private final ApiCalls api;
+    private final int maxPagesAhead;
+
+    /**
+     * @param api The API calls of the event.
+     * @param maxPagesAhead How many fetched pages can wait for the subscriber, at least 1.
+     */
+    public StreamedSetsPublisher(ApiCalls api, int maxPagesAhead) {
+        if (maxPagesAhead < 1) {
+            throw new IllegalArgumentException("maxPagesAhead must be at least 1");
+        }
+        this.api = api;
+        this.maxPagesAhead = maxPagesAhead;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super MatchInfo> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new SetsSubscription(subscriber));
+    }
+
+    /**
+     * One fetch of the event for one subscriber.
+     */
+    private final class SetsSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super MatchInfo> subscriber;
+        // Guards the demand, the cancellation and the fetching thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demandChanged = lock.newCondition();
+        // Only one signal at a time reaches the subscriber, and nothing after the last one
+        private final ReentrantLock signalLock = new ReentrantLock();
+        private long demand;
+        private boolean cancelled;
+        private IllegalArgumentException badRequest;
+        private Thread fetcher;
+        private boolean terminated;
+
+        private SetsSubscription(Flow.Subscriber<? super MatchInfo> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean signalBadRequestNow = false;
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    badRequest = new IllegalArgumentException("The demand must be positive, got " + n);
+                    signalBadRequestNow = fetcher == null;
+                    cancelLocked();
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    demandChanged.signalAll();
+                    if (fetcher == null) {
+                        fetcher = Thread.ofVirtual().name("streamed-sets").start(this::fetch);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Without a fetching thread nobody else would tell the subscriber
+            if (signalBadRequestNow) {
+                terminate(badRequest);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelLocked();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancelLocked() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            demandChanged.signalAll();
+            // Stops the fetching where it is, fetchStreamedSetPages then interrupts the pages in flight
+            if (fetcher != null) {
+                fetcher.interrupt();
+            }
+        }
+
+        private void fetch() {
+            Throwable error = null;
+            try {
+                api.fetchStreamedSetPages(maxPagesAhead, this::onPage, null);
+            } catch (Throwable e) {
+                error = e;
+            }
+
+            lock.lock();
+            boolean wasCancelled;
+            IllegalArgumentException requestError;
+            try {
+                wasCancelled = cancelled;
+                requestError = badRequest;
+            } finally {
+                lock.unlock();
+            }
+            if (requestError != null) {
+                terminate(requestError);
+            } else if (!wasCancelled) {
+                terminate(error);
+            }
+        }
+
+        private void onPage(int page, int totalPages, List<MatchInfo> matches) throws InterruptedException {
+            for (MatchInfo match : matches) {
+                awaitDemand();
+                signalLock.lock();
+                try {
+                    if (terminated) {
+                        throw new CancellationException("The subscription is over");
+                    }
+                    subscriber.onNext(match);
+                } finally {
+                    signalLock.unlock();
+                }
+            }
+        }
+
+        private void awaitDemand() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (demand == 0 && !cancelled) {
+                    demandChanged.await();
+                }
+                if (cancelled) {
+                    throw new CancellationException("The subscription was cancelled");
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sends onError, or onComplete if error is null, unless the subscriber already got one of them.
+         */
+        private void terminate(Throwable error) {
+            signalLock.lock();
+            try {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+            } finally {
+                signalLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Parses a sets page token by token, straight from the response stream.
+ * Each MatchInfo is built as soon as its set object closes and nothing else of the response is kept.
+ * Sets without a stream are skipped with skipChildren, their players and games are never read.
+ *
+ * The result is the same as TreeSetsParser. It relies on GraphQL giving the fields in the same
+ * order as the query, so "phases" is read before "sets" and "stream" before "slots" and "games".
+ */
+public class StreamingSetsParser implements SetsPageParser {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public SetsPage parse(InputStream body, EventPhases phases, String eventSlug) throws IOException {
+        PageState state = read(body, new PageState(phases, 0), eventSlug);
+        return new SetsPage(state.totalPages, state.phases(), state.matches, state.eventCompleted, state.setCount);
+    }
+
+    @Override
+    public List<SetsPage> parsePages(InputStream body, EventPhases phases, String eventSlug, int pages)
+            throws IOException {
+        PageState state = read(body, new PageState(phases, pages), eventSlug);
+        for (SetsPage page : state.aliasPages) {
+            if (page == null) {
+                throw new ApiException("A page is missing in the response for " + eventSlug, 200, false);
+            }
+        }
+        return List.of(state.aliasPages);
+    }
+
+    private static PageState read(InputStream body, PageState state, String eventSlug) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ApiException("Unexpected response for " + eventSlug, 200, false);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "data" -> readData(parser, state);
+                    case "errors" -> readErrors(parser, state);
+                    case "success" -> state.failed = parser.currentToken() == JsonToken.VALUE_FALSE;
+                    case "message" -> state.message = text(parser, "Unknown API error");
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        // Same checks, in the same order, as RequestScheduler.throwIfErrors
+        if (state.error != null) {
+            throw ApiException.fromMessage(state.error, 200);
+        }
+        if (state.failed) {
+            throw ApiException.fromMessage(state.message != null ? state.message : "Unknown API error", 200);
+        }
+        if (!state.eventFound) {
+            throw new ApiException("Event not found: " + eventSlug, 200, false);
+        }
+        return state;
+    }
+
+    private static void readData(JsonParser parser, PageState state) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("event") && parser.currentToken() == JsonToken.START_OBJECT) {
+                state.eventFound = true;
+                readEvent(parser, state);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readErrors(JsonParser parser, PageState state) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                String message = "Unknown GraphQL error";
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if (field.equals("message")) {
+                        message = text(parser, "Unknown GraphQL error");
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                state.error = message;
+            } else {
+                if (first) {
+                    state.error = "Unknown GraphQL error";
+                }
+                parser.skipChildren();
+            }
+            first = false;
+        }
+    }
+
+    private static void readEvent(JsonParser parser, PageState state) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "phases" -> {
+                    if (state.givenPhases == null) {
+                        state.readPhases = readPhases(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "state" -> state.eventCompleted = text(parser, "").equals(SetsQuery.EVENT_COMPLETED);
+                case "sets" -> readSets(parser, state);
+                default -> {
+                    int alias = SetsQuery.aliasIndex(field);
+                    if (alias >= 1 && alias <= state.aliasPages.length) {
+                        // Each alias is a page of its own, read with the same code as "sets"
+                        state.startPage();
+                        readSets(parser, state);
+                        state.aliasPages[alias - 1] = new SetsPage(state.totalPages, state.phases(), state.matches,
+                                state.eventCompleted, state.setCount);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    private static EventPhases readPhases(JsonParser parser) throws IOException {
+        List<EventPhases.Phase> phases = new ArrayList<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return EventPhases.of(phases);
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                phases.add(new EventPhases.Phase("", "", 0));
+                continue;
+            }
+            String id = "";
+            String name = "";
+            int numSeeds = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id" -> id = text(parser, "null");
+                    case "name" -> name = text(parser, "null");
+                    case "numSeeds" -> numSeeds = parser.currentToken() == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : 0;
+                    default -> parser.skipChildren();
+                }
+            }
+            phases.add(new EventPhases.Phase(id, name, numSeeds));
+        }
+        return EventPhases.of(phases);
+    }
+
+    private static void readSets(JsonParser parser, PageState state) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("pageInfo") && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String pageField = parser.currentName();
+                    parser.nextToken();
+                    if (pageField.equals("totalPages") && parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                        state.totalPages = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if (field.equals("nodes") && parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        readSet(parser, state);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads one set object, the parser is on its START_OBJECT and ends on its END_OBJECT.
+     */
+    private static void readSet(JsonParser parser, PageState state) throws IOException {
+        SetState set = state.set;
+        set.reset();
+        state.setCount++;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> set.id = parser.currentToken() == JsonToken.VALUE_NULL ? null : text(parser, null);
+                case "stream" -> {
+                    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                        // Not streamed, we don't need anything else from this set
+                        skipRestOfSet(parser);
+                        return;
+                    }
+                    parser.skipChildren();
+                }
+                case "fullRoundText" -> set.round = text(parser, "Unknown");
+                case "phaseGroup" -> readPhaseGroup(parser, set);
+                case "slots" -> readSlots(parser, set);
+                case "games" -> readGames(parser, set);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (set.playerTags.size() < 2 || set.entrantKeys.size() < 2) return;
+
+        EventPhases phases = state.phases();
+        state.matches.add(new MatchInfo(
+                set.id,
+                set.round,
+                set.playerTags.get(0),
+                set.playerTags.get(1),
+                set.selections.of(set.entrantKeys.get(0)),
+                set.selections.of(set.entrantKeys.get(1)),
+                phases.characters(),
+                phases.multiplePhases(),
+                phases.entrants(set.phaseId),
+                phases.isFirstPhase(set.phaseId)));
+    }
+
+    private static void readPhaseGroup(JsonParser parser, SetState set) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (!field.equals("phase") || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String phaseField = parser.currentName();
+                parser.nextToken();
+                switch (phaseField) {
+                    case "id" -> set.phaseId = text(parser, "");
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readSlots(JsonParser parser, SetState set) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String entrantKey = null;
+            String entrantId = null;
+            String gamerTag = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (!field.equals("entrant") || parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                entrantKey = "";
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String entrantField = parser.currentName();
+                    parser.nextToken();
+                    switch (entrantField) {
+                        case "id" -> entrantId = text(parser, "null");
+                        case "name" -> entrantKey = text(parser, "null");
+                        case "participants" -> gamerTag = readFirstGamerTag(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+            if (entrantKey != null && gamerTag != null) {
+                set.entrantKeys.add(entrantId != null ? entrantId : entrantKey);
+                set.playerTags.add(gamerTag);
+            }
+        }
+    }
+
+    /**
+     * @return The gamerTag of the first participant, or null if there is none.
+     */
+    private static String readFirstGamerTag(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        String gamerTag = null;
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (!first || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                first = false;
+                continue;
+            }
+            first = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (!field.equals("player") || parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String playerField = parser.currentName();
+                    parser.nextToken();
+                    if (playerField.equals("gamerTag")) {
+                        gamerTag = text(parser, "null");
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return gamerTag;
+    }
+
+    private static void readGames(JsonParser parser, SetState set) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("selections") && parser.currentToken() == JsonToken.START_ARRAY) {
+                    readSelections(parser, set);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readSelections(JsonParser parser, SetState set) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String selectionType = "";
+            int selectionValue = -1;
+            String entrantKey = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "selectionType" -> selectionType = text(parser, "null");
+                    case "selectionValue" -> selectionValue = intValue(parser, -1);
+                    case "entrant" -> entrantKey = readEntrantKey(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if ("CHARACTER".equals(selectionType)) {
+                set.selections.add(entrantKey, selectionValue);
+            }
+        }
+    }
+
+    /**
+     * SetsQuery asks for the entrant id, older responses only have the name.
+     */
+    private static String readEntrantKey(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return "";
+        }
+        String id = null;
+        String name = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text(parser, "null");
+                case "name" -> name = text(parser, "null");
+                default -> parser.skipChildren();
+            }
+        }
+        return id != null ? id : name;
+    }
+
+    /**
+     * Same result as JsonNode.asText(nullValue) on the current value:
+     * the text of a scalar, nullValue for null and "" for an object or an array.
+     */
+    private static String text(JsonParser parser, String nullValue) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return nullValue;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Same result as JsonNode.asInt(defaultValue) on the current value.
+     */
+    private static int intValue(JsonParser parser, int defaultValue) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return defaultValue;
+        }
+        return parser.getValueAsInt(defaultValue);
+    }
+
+    private static void skipRestOfSet(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Everything read so far from one response.
+     */
+    private static final class PageState {
+        private final EventPhases givenPhases;
+        // The pages of a coalesced response, empty for a single page
+        private final SetsPage[] aliasPages;
+        private List<MatchInfo> matches = new ArrayList<>();
+        private final SetState set = new SetState();
+        private EventPhases readPhases;
+        private int totalPages = 1;
+        private int setCount;
+        // Read once from the event, the same for all its pages
+        private boolean eventCompleted;
+        private boolean eventFound;
+        private boolean failed;
+        private String message;
+        private String error;
+
+        private PageState(EventPhases givenPhases, int aliases) {
+            this.givenPhases = givenPhases;
+            this.aliasPages = new SetsPage[aliases];
+        }
+
+        // The next sets connection starts, the counts of the previous alias are in its SetsPage
+        private void startPage() {
+            matches = new ArrayList<>();
+            totalPages = 1;
+            setCount = 0;
+        }
+
+        private EventPhases phases() {
+            if (givenPhases != null) return givenPhases;
+            if (readPhases == null) readPhases = EventPhases.of(List.of());
+            return readPhases;
+        }
+    }
+
+    /**
+     * The fields of the set being read, reused from one set to the next.
+     */
+    private static final class SetState {
+        private final List<String> playerTags = new ArrayList<>(2);
+        private final List<String> entrantKeys = new ArrayList<>(2);
+        private final CharacterSelections selections = new CharacterSelections();
+        private String id;
+        private String round;
+        private String phaseId;
+
+        private void reset() {
+            id = null;
+            playerTags.clear();
+            entrantKeys.clear();
+            selections.clear();
+            round = "Unknown";
+            phaseId = "";
+        }
+    }
+}
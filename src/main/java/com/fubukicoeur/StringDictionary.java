@@ -0,0 +1,50 @@
+package com.fubukicoeur;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives each different string a number, so a string seen thousands of times (a tag, "Winners Round 1")
+ * is kept once and the rows only keep its number.
+ *
+ * Not thread safe.
+ */
+public final class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * @return The number of the string, a new one if it was never seen.
+     */
+    public int code(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int newCode = values.size();
+        values.add(value);
+        codes.put(value, newCode);
+        return newCode;
+    }
+
+    /**
+     * @return The number of the string, -1 if it was never seen.
+     */
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * @return The string with this number, always the same instance.
+     */
+    public String value(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,307 @@
+package com.fubukicoeur;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Daemon mode: a small local HTTP API over ApiCalls, so several tools (stream overlays, a Discord bot...)
+ * share one copy of the sets of an event instead of each fetching it.
+ *
+ * GET /titles?slug=...&event=...[&format=txt|csv|json][&template=...][&maxLength=100] gives the titles
+ * like the CLI writes them, GET /status gives the counters in JSON.
+ *
+ * The requests for an event that is being fetched wait for that fetch instead of starting their own
+ * (single-flight), and the fetched sets are kept for a while in an LRU, so hundreds of clients asking the
+ * same event make one upstream fetch. Every request has its own virtual thread.
+ * The cached events are MatchStores, many events of a weekend fit in the heap of a small daemon.
+ */
+public class TitleServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    public static final int DEFAULT_MAX_EVENTS = 64;
+
+    // Hundreds of clients can connect at once, the default backlog is much smaller
+    private static final int BACKLOG = 1024;
+
+    private final TokenPool tokens;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Slug -> the fetch running for it, removed once its sets are in the cache
+    private final Map<String, CompletableFuture<MatchStore>> inFlight = new ConcurrentHashMap<>();
+    // Access ordered, the least recently asked event is dropped first. Guarded by itself
+    private final LinkedHashMap<String, CachedEvent> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile long ttlNanos = DEFAULT_TTL.toNanos();
+    private volatile int maxEvents = DEFAULT_MAX_EVENTS;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private record CachedEvent(MatchStore matches, long fetchedAt) {
+    }
+
+    /**
+     * Where the sets of a request came from, sent in the X-Cache header.
+     */
+    private enum Source {
+        /** From the cache. */
+        HIT,
+        /** Fetched for this request. */
+        MISS,
+        /** Fetched for another request that came first. */
+        SHARED
+    }
+
+    private record Lookup(MatchStore matches, Source source) {
+    }
+
+    /**
+     * Opens the server on localhost, call start() to serve requests.
+     *
+     * @param tokens The API tokens used for the fetches.
+     * @param port The port, 0 for any free port.
+     */
+    public TitleServer(TokenPool tokens, int port) throws IOException {
+        this.tokens = tokens;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), BACKLOG);
+        server.createContext("/titles", exchange -> handle(exchange, this::titles));
+        server.createContext("/status", exchange -> handle(exchange, this::status));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * @param ttl How long the sets of an event are served before being fetched again, 5 minutes by default.
+     */
+    public void setTtl(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @param maxEvents How many events are kept in memory, the least recently asked ones are dropped first.
+     */
+    public void setMaxEvents(int maxEvents) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("maxEvents must be at least 1");
+        }
+        this.maxEvents = maxEvents;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The URL of the titles endpoint.
+     */
+    public String getUrl() {
+        return "http://localhost:" + getPort() + "/titles";
+    }
+
+    /**
+     * Gives the sets of an event from the cache, from the fetch already running for it, or from a new fetch.
+     *
+     * @param eventSlug The slug of the event.
+     */
+    private Lookup lookup(String eventSlug) throws Exception {
+        MatchStore cached = cached(eventSlug);
+        if (cached != null) {
+            hits.increment();
+            return new Lookup(cached, Source.HIT);
+        }
+
+        CompletableFuture<MatchStore> flight = new CompletableFuture<>();
+        CompletableFuture<MatchStore> running = inFlight.putIfAbsent(eventSlug, flight);
+        if (running != null) {
+            shared.increment();
+            return new Lookup(join(running), Source.SHARED);
+        }
+        try {
+            // A fetch may have ended between the cache lookup and putIfAbsent, its sets are in the cache then
+            cached = cached(eventSlug);
+            if (cached != null) {
+                hits.increment();
+                flight.complete(cached);
+                return new Lookup(cached, Source.HIT);
+            }
+            fetches.increment();
+            // Page by page into the store, the MatchInfo of a page are garbage once it is added
+            MatchStore matches = new MatchStore();
+            new ApiCalls(tokens, eventSlug).fetchStreamedSetPages(Integer.MAX_VALUE,
+                    (_, _, page) -> matches.addAll(page), null);
+            matches.trimToSize();
+            synchronized (cache) {
+                cache.put(eventSlug, new CachedEvent(matches, System.nanoTime()));
+                while (cache.size() > maxEvents) {
+                    cache.pollFirstEntry();
+                }
+            }
+            flight.complete(matches);
+            return new Lookup(matches, Source.MISS);
+        } catch (Exception e) {
+            // Not cached, the next request tries again
+            failures.increment();
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(eventSlug, flight);
+        }
+    }
+
+    private MatchStore cached(String eventSlug) {
+        synchronized (cache) {
+            CachedEvent event = cache.get(eventSlug);
+            if (event == null) {
+                return null;
+            }
+            if (System.nanoTime() - event.fetchedAt() > ttlNanos) {
+                cache.remove(eventSlug);
+                return null;
+            }
+            return event.matches();
+        }
+    }
+
+    private static MatchStore join(CompletableFuture<MatchStore> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Response titles(Map<String, String> parameters) throws Exception {
+        String eventSlug = parameters.getOrDefault("slug", "").trim();
+        String eventName = parameters.getOrDefault("event", "").trim();
+        if (eventSlug.isEmpty() || eventName.isEmpty()) {
+            throw new IllegalArgumentException("slug and event are required");
+        }
+        OutputFormat format;
+        try {
+            format = OutputFormat.parse(parameters.getOrDefault("format", "txt"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + parameters.get("format"));
+        }
+        String maxLength = parameters.getOrDefault("maxLength", Integer.toString(TitleTemplate.YOUTUBE_MAX_LENGTH));
+        if (!maxLength.matches("\\d+")) {
+            throw new IllegalArgumentException("maxLength needs a number: " + maxLength);
+        }
+        // Checked before the fetch, a typo shouldn't cost a fetch
+        TitleTemplate template = TitleTemplate.compile(
+                parameters.getOrDefault("template", TitleTemplate.DEFAULT_PATTERN), Integer.parseInt(maxLength));
+
+        Lookup lookup = lookup(eventSlug);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(lookup.matches().size() * 96 + 16);
+        try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+            TitleWriter.write(lookup.matches(), eventName, writer, format, template);
+        }
+        String contentType = switch (format) {
+            case TXT -> "text/plain; charset=utf-8";
+            case CSV -> "text/csv; charset=utf-8";
+            case JSON -> "application/json";
+        };
+        return new Response(200, contentType, body.toByteArray(), lookup.source());
+    }
+
+    private Response status(Map<String, String> parameters) {
+        int cachedEvents;
+        synchronized (cache) {
+            cachedEvents = cache.size();
+        }
+        String json = "{\"requests\":" + requests.sum() + ",\"hits\":" + hits.sum() + ",\"shared\":" + shared.sum()
+                + ",\"fetches\":" + fetches.sum() + ",\"failures\":" + failures.sum()
+                + ",\"inFlight\":" + inFlight.size() + ",\"cachedEvents\":" + cachedEvents + "}\n";
+        return new Response(200, "application/json", json.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private record Response(int status, String contentType, byte[] body, Source source) {
+        private static Response error(int status, String message) {
+            return new Response(status, "text/plain; charset=utf-8",
+                    (message + "\n").getBytes(StandardCharsets.UTF_8), null);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response answer(Map<String, String> parameters) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            requests.increment();
+            Response response;
+            if (!exchange.getRequestMethod().equals("GET")) {
+                response = Response.error(405, "Only GET is supported");
+            } else {
+                try {
+                    response = endpoint.answer(parameters(exchange.getRequestURI().getRawQuery()));
+                } catch (IllegalArgumentException e) {
+                    response = Response.error(400, e.getMessage());
+                } catch (ApiException e) {
+                    response = Response.error(502, "API error : " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    response = Response.error(503, "Shutting down");
+                } catch (Exception e) {
+                    response = Response.error(500, "Error : " + e);
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            if (response.source() != null) {
+                exchange.getResponseHeaders().set("X-Cache", response.source().name());
+            }
+            exchange.sendResponseHeaders(response.status(), response.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body());
+            }
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,318 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A title layout like "{event} - {phase} {round} - {p1} ({p1chars}) VS {p2} ({p2chars})".
+ *
+ * The template is parsed once into a list of parts that append straight to a StringBuilder,
+ * so a title costs no String.format and no intermediate strings (give appendTo the same builder
+ * for every title and there's nothing left to allocate but the final String, if one is needed).
+ *
+ * Placeholders: {event} {phase} {round} {p1} {p2} {p1chars} {p2chars}. A placeholder that gives nothing
+ * (no phase for a single phase event for example) also removes the space right after it.
+ *
+ * When the title is longer than the max length (100 by default, the YouTube limit), the character lists
+ * are shortened first (only the first character, then no characters at all), then the tags, and only then
+ * the end of the title is cut.
+ */
+public final class TitleTemplate {
+    public static final int YOUTUBE_MAX_LENGTH = 100;
+    public static final String DEFAULT_PATTERN = "{event} - {phase} {round} - {p1} ({p1chars}) VS {p2} ({p2chars})";
+    // What MatchInfo.toString gives, the title without the event name
+    static final String MATCH_PATTERN = "{phase} {round} - {p1} ({p1chars}) VS {p2} ({p2chars})";
+
+    public static final TitleTemplate DEFAULT = compile(DEFAULT_PATTERN);
+    // Read by the window and the command line, next to token.txt
+    public static final Path DEFAULT_FILE = Path.of("template.txt");
+
+    private static final char ELLIPSIS = '…';
+    // A tag is never shortened below this, ellipsis included
+    private static final int MIN_TAG_LENGTH = 4;
+
+    // How much of the character lists is written
+    private static final int CHARS_ALL = 0;
+    private static final int CHARS_FIRST = 1;
+    private static final int CHARS_NONE = 2;
+
+    private final String pattern;
+    private final Part[] parts;
+    private final int maxLength;
+
+    private TitleTemplate(String pattern, Part[] parts, int maxLength) {
+        this.pattern = pattern;
+        this.parts = parts;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Parses a template, with the YouTube max length.
+     *
+     * @param pattern The template.
+     * @return The compiled template, it can be shared between threads.
+     * @throws IllegalArgumentException If a placeholder is unknown or not closed.
+     */
+    public static TitleTemplate compile(String pattern) {
+        return compile(pattern, YOUTUBE_MAX_LENGTH);
+    }
+
+    /**
+     * @param pattern The template.
+     * @param maxLength The max length of a title, 0 for no limit.
+     */
+    public static TitleTemplate compile(String pattern, int maxLength) {
+        if (maxLength < 0 || (maxLength > 0 && maxLength < MIN_TAG_LENGTH)) {
+            throw new IllegalArgumentException("The max length must be 0 or at least " + MIN_TAG_LENGTH);
+        }
+        List<Part> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int end = pattern.indexOf('}', i);
+            if (end < 0) {
+                throw new IllegalArgumentException("Placeholder not closed at " + i + " in: " + pattern);
+            }
+            String name = pattern.substring(i + 1, end);
+            i = end + 1;
+
+            Field field = Field.of(name);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "}, use {event} {phase} {round}"
+                        + " {p1} {p2} {p1chars} {p2chars}");
+            }
+            // "({p1chars})": the parentheses go away with the characters when the title is too long
+            boolean parenthesized = field.isCharacters() && literal.length() > 0
+                    && literal.charAt(literal.length() - 1) == '(' && i < pattern.length() && pattern.charAt(i) == ')';
+            if (parenthesized) {
+                literal.setLength(literal.length() - 1);
+                i++;
+            }
+            if (literal.length() > 0) {
+                parts.add(new Part(null, literal.toString(), false));
+                literal.setLength(0);
+            }
+            parts.add(new Part(field, null, parenthesized));
+        }
+        if (literal.length() > 0) {
+            parts.add(new Part(null, literal.toString(), false));
+        }
+        return new TitleTemplate(pattern, parts.toArray(new Part[0]), maxLength);
+    }
+
+    /**
+     * Reads a template from a file (the first line that isn't blank), like token.txt for the token.
+     *
+     * @param file The file.
+     * @return The template of the file, or the default one if the file doesn't exist or is empty.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If the template in the file is wrong.
+     */
+    public static TitleTemplate fromFileOrDefault(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return DEFAULT;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                return compile(line.strip());
+            }
+        }
+        return DEFAULT;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return The same template with another max length, 0 for no limit.
+     */
+    public TitleTemplate withMaxLength(int maxLength) {
+        return maxLength == this.maxLength ? this : compile(pattern, maxLength);
+    }
+
+    /**
+     * @return The title of a match.
+     */
+    public String format(String eventName, MatchInfo match) {
+        StringBuilder title = new StringBuilder(maxLength > 0 ? maxLength + 16 : 128);
+        appendTo(title, eventName, match);
+        return title.toString();
+    }
+
+    /**
+     * Appends the title of a match, nothing else is allocated when the builder is big enough.
+     *
+     * @param title The builder, the title is added at its end.
+     * @param eventName The event name for {event}.
+     * @param match The match.
+     */
+    public void appendTo(StringBuilder title, String eventName, MatchInfo match) {
+        int start = title.length();
+        render(title, eventName, match, CHARS_ALL, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        if (maxLength == 0 || title.length() - start <= maxLength) {
+            return;
+        }
+
+        for (int chars = CHARS_FIRST; chars <= CHARS_NONE; chars++) {
+            title.setLength(start);
+            render(title, eventName, match, chars, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            if (title.length() - start <= maxLength) {
+                return;
+            }
+        }
+
+        // Then the longest tag loses one character at a time
+        int excess = title.length() - start - maxLength;
+        int tag1 = tagLength(match.getPlayer1Tag());
+        int tag2 = tagLength(match.getPlayer2Tag());
+        while (excess > 0 && (tag1 > MIN_TAG_LENGTH || tag2 > MIN_TAG_LENGTH)) {
+            if (tag1 >= tag2 && tag1 > MIN_TAG_LENGTH) {
+                tag1--;
+            } else {
+                tag2--;
+            }
+            excess--;
+        }
+        title.setLength(start);
+        render(title, eventName, match, CHARS_NONE, tag1, tag2);
+        if (title.length() - start <= maxLength) {
+            return;
+        }
+
+        // Still too long (a very long event name or round), cut the end
+        int cut = start + maxLength - 1;
+        if (Character.isHighSurrogate(title.charAt(cut - 1))) {
+            cut--;
+        }
+        title.setLength(cut);
+        title.append(ELLIPSIS);
+    }
+
+    private void render(StringBuilder title, String eventName, MatchInfo match, int chars, int tag1Max, int tag2Max) {
+        int start = title.length();
+        boolean previousEmpty = false;
+        for (Part part : parts) {
+            if (part.field == null) {
+                String text = part.literal;
+                if (previousEmpty && text.charAt(0) == ' ') {
+                    title.append(text, 1, text.length());
+                } else {
+                    title.append(text);
+                }
+                previousEmpty = false;
+                continue;
+            }
+            int before = title.length();
+            switch (part.field) {
+                case EVENT -> {
+                    // No event name (the server, a caller without one) gives nothing, not "null"
+                    if (eventName != null) {
+                        title.append(eventName);
+                    }
+                }
+                case PHASE -> match.appendPhase(title);
+                case ROUND -> title.append(match.getRound());
+                case P1 -> appendTag(title, match.getPlayer1Tag(), tag1Max);
+                case P2 -> appendTag(title, match.getPlayer2Tag(), tag2Max);
+                case P1_CHARS -> appendCharacters(title, match, match.getPlayer1Characters(), chars, part.parenthesized);
+                case P2_CHARS -> appendCharacters(title, match, match.getPlayer2Characters(), chars, part.parenthesized);
+            }
+            previousEmpty = title.length() == before;
+        }
+        // The space before a placeholder at the end that gave nothing ("VS {p2} ({p2chars})" without characters)
+        if (previousEmpty) {
+            int end = title.length();
+            while (end > start && title.charAt(end - 1) == ' ') {
+                end--;
+            }
+            title.setLength(end);
+        }
+    }
+
+    private static void appendTag(StringBuilder title, String tag, int max) {
+        if (tag == null || tag.length() <= max) {
+            title.append(tag);
+            return;
+        }
+        title.append(tag, 0, max - 1).append(ELLIPSIS);
+    }
+
+    private static int tagLength(String tag) {
+        return tag == null ? 4 : tag.length();
+    }
+
+    private static void appendCharacters(StringBuilder title, MatchInfo match, int[] ids, int chars,
+            boolean parenthesized) {
+        if (chars == CHARS_NONE) {
+            return;
+        }
+        if (parenthesized) {
+            title.append('(');
+        }
+        int count = chars == CHARS_FIRST ? Math.min(1, ids.length) : ids.length;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                title.append(", ");
+            }
+            title.append(match.characterName(ids[i]));
+        }
+        if (parenthesized) {
+            title.append(')');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    private enum Field {
+        EVENT("event"),
+        PHASE("phase"),
+        ROUND("round"),
+        P1("p1"),
+        P2("p2"),
+        P1_CHARS("p1chars"),
+        P2_CHARS("p2chars");
+
+        private final String placeholder;
+
+        Field(String placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        boolean isCharacters() {
+            return this == P1_CHARS || this == P2_CHARS;
+        }
+
+        static Field of(String placeholder) {
+            for (Field field : values()) {
+                if (field.placeholder.equals(placeholder)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Either some literal text or a placeholder.
+     */
+    private record Part(Field field, String literal, boolean parenthesized) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.fubukicoeur;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the titles of an event to a file. It doesn't use anything from AWT or Swing
+ * so the command line mode can use it without loading them.
+ */
+public final class TitleWriter {
+    static final String CSV_HEADER = "set_id,title,round,player1,player1_characters,player2,player2_characters";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private TitleWriter() {
+    }
+
+    /**
+     * @return The title of a match with the default template, as written in the output.
+     */
+    public static String formatTitle(String eventName, MatchInfo match) {
+        return TitleTemplate.DEFAULT.format(eventName, match);
+    }
+
+    /**
+     * Writes the titles of all the matches.
+     *
+     * @param matches The matches, in the order they are written.
+     * @param eventName The event name put at the start of each title.
+     * @param output The file to write, replaced if it exists.
+     * @param format The format of the file.
+     * @throws IOException if there's an error writing to the file
+     */
+    public static void write(List<MatchInfo> matches, String eventName, Path output, OutputFormat format)
+            throws IOException {
+        write(matches, eventName, output, format, TitleTemplate.DEFAULT);
+    }
+
+    /**
+     * Same as the other write, with the titles built from a template.
+     */
+    public static void write(List<MatchInfo> matches, String eventName, Path output, OutputFormat format,
+            TitleTemplate template) throws IOException {
+        FetchEvents.OutputWrite writeEvent = new FetchEvents.OutputWrite();
+        writeEvent.begin();
+        long writeStart = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            write(matches, eventName, writer, format, template);
+        }
+        writeEvent.file = output.toString();
+        writeEvent.titles = matches.size();
+        writeEvent.commit();
+        FetchMetrics.get().written(System.nanoTime() - writeStart, matches.size());
+    }
+
+    /**
+     * Same as the other write, to any writer.
+     */
+    public static void write(List<MatchInfo> matches, String eventName, Writer writer, OutputFormat format)
+            throws IOException {
+        write(matches, eventName, writer, format, TitleTemplate.DEFAULT);
+    }
+
+    /**
+     * Same as the other write, to any writer and with the titles built from a template.
+     *
+     * @param matches The matches, a List or a MatchStore.
+     */
+    public static void write(Iterable<MatchInfo> matches, String eventName, Writer writer, OutputFormat format,
+            TitleTemplate template) throws IOException {
+        switch (format) {
+            case TXT, CSV -> {
+                if (format == OutputFormat.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write(System.lineSeparator());
+                }
+                // One builder and one char buffer for the whole file, the lines are never turned into Strings
+                StringBuilder line = new StringBuilder(128);
+                char[] chars = new char[128];
+                for (MatchInfo match : matches) {
+                    line.setLength(0);
+                    appendLine(line, eventName, match, format, template);
+                    if (chars.length < line.length()) {
+                        chars = new char[line.length() * 2];
+                    }
+                    line.getChars(0, line.length(), chars, 0);
+                    writer.write(chars, 0, line.length());
+                }
+            }
+            case JSON -> {
+                JsonGenerator json = jsonFactory.createGenerator(writer).useDefaultPrettyPrinter();
+                json.writeStartArray();
+                for (MatchInfo match : matches) {
+                    json.writeStartObject();
+                    json.writeStringField("setId", match.getSetId());
+                    json.writeStringField("title", template.format(eventName, match));
+                    json.writeStringField("round", match.getRound());
+                    json.writeStringField("player1", match.getPlayer1Tag());
+                    writeCharacters(json, "player1Characters", match.getPlayer1Characters());
+                    json.writeStringField("player2", match.getPlayer2Tag());
+                    writeCharacters(json, "player2Characters", match.getPlayer2Characters());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.flush();
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Appends the line of a match, line separator included, for the formats that have one line per match.
+     *
+     * @param format TXT or CSV.
+     */
+    static void appendLine(StringBuilder line, String eventName, MatchInfo match, OutputFormat format,
+            TitleTemplate template) {
+        if (format == OutputFormat.TXT) {
+            template.appendTo(line, eventName, match);
+        } else if (format == OutputFormat.CSV) {
+            line.append(csv(match.getSetId() != null ? match.getSetId() : "")).append(',')
+                    .append(csv(template.format(eventName, match))).append(',')
+                    .append(csv(match.getRound())).append(',')
+                    .append(csv(match.getPlayer1Tag())).append(',')
+                    .append(csv(joinIds(match.getPlayer1Characters()))).append(',')
+                    .append(csv(match.getPlayer2Tag())).append(',')
+                    .append(csv(joinIds(match.getPlayer2Characters())));
+        } else {
+            throw new IllegalArgumentException(format + " has no lines");
+        }
+        line.append(System.lineSeparator());
+    }
+
+    // Written as strings, like the files made before the ids were ints
+    private static void writeCharacters(JsonGenerator json, String field, int[] characters) throws IOException {
+        json.writeArrayFieldStart(field);
+        for (int id : characters) {
+            json.writeString(Integer.toString(id));
+        }
+        json.writeEndArray();
+    }
+
+    private static String joinIds(int[] characters) {
+        StringBuilder joined = new StringBuilder();
+        for (int id : characters) {
+            if (joined.length() > 0) {
+                joined.append(';');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+
+    static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
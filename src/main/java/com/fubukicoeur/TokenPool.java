@@ -0,0 +1,161 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Several API tokens used as one, each token keeps its own rate limit bucket (RateLimiter.forToken),
+ * so with n tokens we can send n times more requests.
+ * A request takes the token that has budget right now, or the one that has budget first.
+ * A token the API refuses (revoked, mistyped) is taken out of the pool for the rest of the run.
+ */
+public class TokenPool {
+    // When every bucket is empty, we look again at least this often
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<String> tokens;
+    private final Set<String> refused = ConcurrentHashMap.newKeySet();
+    // Where the search starts, so the tokens that all have budget are used in turn
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * A token to send one request with.
+     *
+     * @param token The API token.
+     * @param waited The time spent waiting for a bucket, in nanoseconds.
+     */
+    public record Lease(String token, long waited) {
+    }
+
+    /**
+     * @param tokens The API tokens, duplicates and blank ones are dropped.
+     */
+    public TokenPool(List<String> tokens) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String token : tokens) {
+            if (token != null && !token.isBlank()) {
+                unique.add(token.trim());
+            }
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("No API token");
+        }
+        this.tokens = List.copyOf(unique);
+    }
+
+    /**
+     * @return A pool of one token, what we had before the pools.
+     */
+    public static TokenPool of(String apiToken) {
+        return new TokenPool(List.of(apiToken));
+    }
+
+    /**
+     * @param text Tokens separated by new lines or commas, like token.txt or --token.
+     *             The lines starting with # are ignored.
+     */
+    public static TokenPool parse(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String line : text.split("\\R")) {
+            if (line.strip().startsWith("#")) {
+                continue;
+            }
+            for (String token : line.split(",")) {
+                tokens.add(token);
+            }
+        }
+        return new TokenPool(tokens);
+    }
+
+    /**
+     * @param file A file with one token per line, token.txt for example.
+     */
+    public static TokenPool read(Path file) throws IOException {
+        try {
+            return parse(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The token file is empty: " + file);
+        }
+    }
+
+    /**
+     * Waits until one of the tokens can send a request and takes it from its bucket.
+     *
+     * @throws ApiException If the API refused every token of the pool.
+     */
+    public Lease acquire() throws InterruptedException, ApiException {
+        if (tokens.size() == 1) {
+            String token = tokens.get(0);
+            throwIfAllRefused();
+            return new Lease(token, RateLimiter.forToken(token).acquire());
+        }
+        long waited = 0;
+        while (true) {
+            throwIfAllRefused();
+            int start = Math.floorMod(next.getAndIncrement(), tokens.size());
+            long shortestWait = Long.MAX_VALUE;
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get((start + i) % tokens.size());
+                if (refused.contains(token)) {
+                    continue;
+                }
+                RateLimiter limiter = RateLimiter.forToken(token);
+                if (limiter.tryAcquire()) {
+                    return new Lease(token, waited);
+                }
+                shortestWait = Math.min(shortestWait, limiter.nanosUntilAvailable());
+            }
+            // Another request can take the budget before us, then we just look again
+            long wait = Math.max(MIN_WAIT_NANOS, shortestWait == Long.MAX_VALUE ? 0 : shortestWait);
+            TimeUnit.NANOSECONDS.sleep(wait);
+            waited += wait;
+        }
+    }
+
+    /**
+     * Takes a token out of the pool after the API refused it.
+     *
+     * @param token The refused token.
+     * @param reason What the API said.
+     * @return true if other tokens are left to try.
+     */
+    public boolean refuse(String token, String reason) {
+        if (tokens.contains(token) && refused.add(token) && tokens.size() > 1) {
+            System.out.println("API token " + mask(token) + " was refused (" + reason + "), "
+                    + getLiveCount() + " of " + tokens.size() + " tokens left");
+        }
+        return getLiveCount() > 0;
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * @return The number of tokens not refused by the API.
+     */
+    public int getLiveCount() {
+        return tokens.size() - refused.size();
+    }
+
+    private void throwIfAllRefused() throws ApiException {
+        if (getLiveCount() == 0) {
+            throw new ApiException(tokens.size() == 1 ? "The API token was refused"
+                    : "All the " + tokens.size() + " API tokens were refused", 401, false);
+        }
+    }
+
+    // Enough to tell the tokens apart in the logs without printing them
+    private static String mask(String token) {
+        return token.length() <= 4 ? "****" : token.substring(0, 4) + "****";
+    }
+}
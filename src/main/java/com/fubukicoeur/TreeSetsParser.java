@@ -0,0 +1,140 @@
+package com.fubukicoeur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Parses a sets page by reading the whole response into a JsonNode tree first.
+ * It is the simplest way to do it, but every node of the response is kept in memory until the page is done.
+ */
+public class TreeSetsParser implements SetsPageParser {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public SetsPage parse(InputStream body, EventPhases phases, String eventSlug) throws IOException {
+        JsonNode event = readEvent(body, eventSlug);
+        if (phases == null) {
+            phases = EventPhases.fromNode(event.path("phases"));
+        }
+        return page(event.path("sets"), phases, eventCompleted(event));
+    }
+
+    @Override
+    public List<SetsPage> parsePages(InputStream body, EventPhases phases, String eventSlug, int pages)
+            throws IOException {
+        JsonNode event = readEvent(body, eventSlug);
+        if (phases == null) {
+            phases = EventPhases.fromNode(event.path("phases"));
+        }
+        List<SetsPage> result = new ArrayList<>(pages);
+        for (int alias = 1; alias <= pages; alias++) {
+            JsonNode setsNode = event.path(SetsQuery.alias(alias));
+            if (!setsNode.isObject()) {
+                throw new ApiException("A page is missing in the response for " + eventSlug, 200, false);
+            }
+            result.add(page(setsNode, phases, eventCompleted(event)));
+        }
+        return result;
+    }
+
+    private static JsonNode readEvent(InputStream body, String eventSlug) throws IOException {
+        JsonNode root = objectMapper.readTree(body);
+        RequestScheduler.throwIfErrors(root);
+
+        JsonNode event = root.path("data").path("event");
+        if (event.isMissingNode() || event.isNull()) {
+            throw new ApiException("Event not found: " + eventSlug, 200, false);
+        }
+        return event;
+    }
+
+    private static boolean eventCompleted(JsonNode event) {
+        return event.path("state").asText("").equals(SetsQuery.EVENT_COMPLETED);
+    }
+
+    private static SetsPage page(JsonNode setsNode, EventPhases phases, boolean eventCompleted) {
+        int totalPages = setsNode.path("pageInfo").path("totalPages").asInt(1);
+        return new SetsPage(totalPages, phases, parseSetNodes(setsNode.path("nodes"), phases), eventCompleted,
+                setsNode.path("nodes").size());
+    }
+
+    /**
+     * Turns the set nodes of one page into MatchInfo objects, sets without a stream are skipped.
+     *
+     * @param nodes The "nodes" array of the sets connection.
+     * @param phases The phases of the event.
+     * @return The streamed matches of this page, in the same order as the API gave them.
+     */
+    private static List<MatchInfo> parseSetNodes(JsonNode nodes, EventPhases phases) {
+        List<MatchInfo> matches = new ArrayList<>();
+
+        for (JsonNode setNode : nodes) {
+            if (setNode.path("stream").isNull()) continue;
+
+            String round = setNode.path("fullRoundText").asText("Unknown");
+            JsonNode phaseNode = setNode.path("phaseGroup").path("phase");
+
+            String phaseId = phaseNode.path("id").asText("");
+            int entrants = phases.entrants(phaseId);
+            boolean isFirstPhase = phases.isFirstPhase(phaseId);
+
+            // Players
+            List<String> playerTags = new ArrayList<>();
+            List<String> entrantKeys = new ArrayList<>();
+            for (JsonNode slot : setNode.path("slots")) {
+                JsonNode entrant = slot.path("entrant");
+                if (entrant.isMissingNode()) continue;
+
+                JsonNode participants = entrant.path("participants");
+                if (!participants.isArray() || participants.size() == 0) continue;
+
+                JsonNode player = participants.get(0).path("player");
+                if (player.isMissingNode() || player.path("gamerTag").isMissingNode()) continue;
+
+                entrantKeys.add(entrantKey(entrant));
+                playerTags.add(player.path("gamerTag").asText());
+            }
+
+            if (playerTags.size() < 2 || entrantKeys.size() < 2) continue;
+
+            // Character selections, matched to the slots by entrant
+            CharacterSelections selections = new CharacterSelections();
+            for (JsonNode game : setNode.path("games")) {
+                for (JsonNode sel : game.path("selections")) {
+                    if (!"CHARACTER".equals(sel.path("selectionType").asText())) continue;
+
+                    selections.add(entrantKey(sel.path("entrant")), sel.path("selectionValue").asInt(-1));
+                }
+            }
+
+            MatchInfo match = new MatchInfo(
+                    setNode.hasNonNull("id") ? setNode.path("id").asText() : null,
+                    round,
+                    playerTags.get(0),
+                    playerTags.get(1),
+                    selections.of(entrantKeys.get(0)),
+                    selections.of(entrantKeys.get(1)),
+                    phases.characters(),
+                    phases.multiplePhases(),
+                    entrants,
+                    isFirstPhase);
+
+            matches.add(match);
+        }
+
+        return matches;
+    }
+
+    /**
+     * SetsQuery asks for the entrant id, older responses only have the name.
+     */
+    private static String entrantKey(JsonNode entrant) {
+        JsonNode id = entrant.path("id");
+        return id.isMissingNode() ? entrant.path("name").asText() : id.asText();
+    }
+}